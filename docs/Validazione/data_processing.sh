@@ -1,5 +1,4 @@
 #!/bin/bash
-for i in `ls -1 *.txt`;
-do cat $i | grep "INFO: Errore" | awk '{print $6"\t"$9}' | sed 's/K-NN=//' | tr . , > $i.Grafico.csv;
-mv $i.Grafico.csv `echo $i.Grafico.csv | sed s/.txt//`;
+for i in `ls -1 *.txt *.tsv *.log 2>/dev/null`;
+do (grep "INFO: Errore" $i | awk '{print $6"\t"$9}' | sed 's/K-NN=//'; awk -F'\t' '$1=="error" {print $2"\t"$4}' $i) | tr . , > ${i%.*}.Grafico.csv;
 done
@@ -0,0 +1,258 @@
+package ansascraper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class substitutes the sequences of the special HTML characters (entities) with the characters they represent, reading the
+ * text only once: Both the named entities (like &amp;egrave;) and the numeric ones, decimal (&amp;#232;) and hexadecimal
+ * (&amp;#xE8;), are recognized.
+ * The sequences that don't correspond to any character are left unchanged.
+ * <p>
+ * The named entities are searched inside a map, built only once from the matrix <code>specialCharacters</code>.
+ * It is used by the lexical analyzer, both on the strings of the title and the text, and (through the method
+ * {@link #decodeEntity decodeEntity}) on the text passed to a handler while it is read.
+ * 
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public final class HtmlEntityDecoder {
+
+    /**
+     * The maximum length of the sequence of an entity, including the initial '&amp;' and the final ';'.
+     */
+    public static final int MAXLENGTH = 12;
+    /**
+     * 2-columns matrix containing, for each sequence corresponding to a special HTML character, the graphical rappresentation of such character.
+     * The non-breaking space is substituted by a normal space, so that it is considered like the other spaces.
+     */
+    private static final String specialCharacters[][] = {
+        {"\"", "&quot;"},
+        {"'", "&apos;"},
+        {"&", "&amp;"},
+        {"<", "&lt;"},
+        {">", "&gt;"},
+        {" ", "&nbsp;"},
+        {"¤", "&curren;"},
+        {"¢", "&cent;"},
+        {"£", "&pound;"},
+        {"¥", "&yen;"},
+        {"¦", "&brvbar;"},
+        {"§", "&sect;"},
+        {"©", "&copy;"},
+        {"ª", "&ordf;"},
+        {"«", "&laquo;"},
+        {"¬", "&not;"},
+        {"\u00ad", "&shy;"},
+        {"®", "&reg;"},
+        {"™", "&trade;"},
+        {"¯", "&macr;"},
+        {"°", "&deg;"},
+        {"±", "&plusmn;"},
+        {"¹", "&sup1;"},
+        {"²", "&sup2;"},
+        {"³", "&sup3;"},
+        {"´", "&acute;"},
+        {"µ", "&micro;"},
+        {"¶", "&para;"},
+        {"·", "&middot;"},
+        {"¸", "&cedil;"},
+        {"º", "&ordm;"},
+        {"»", "&raquo;"},
+        {"¼", "&frac14;"},
+        {"½", "&frac12;"},
+        {"¾", "&frac34;"},
+        {"¿", "&iquest;"},
+        {"×", "&times;"},
+        {"÷", "&divide;"},
+        {"à", "&agrave;"},
+        {"á", "&aacute;"},
+        {"â", "&acirc;"},
+        {"ã", "&atilde;"},
+        {"ä", "&auml;"},
+        {"å", "&aring;"},
+        {"æ", "&aelig;"},
+        {"ç", "&ccedil;"},
+        {"è", "&egrave;"},
+        {"é", "&eacute;"},
+        {"ê", "&ecirc;"},
+        {"ë", "&euml;"},
+        {"ì", "&igrave;"},
+        {"í", "&iacute;"},
+        {"î", "&icirc;"},
+        {"ï", "&iuml;"},
+        {"ð", "&eth;"},
+        {"ñ", "&ntilde;"},
+        {"ò", "&ograve;"},
+        {"ó", "&oacute;"},
+        {"õ", "&otilde;"},
+        {"ø", "&oslash;"},
+        {"ù", "&ugrave;"},
+        {"ú", "&uacute;"},
+        {"û", "&ucirc;"},
+        {"ü", "&uuml;"},
+        {"ý", "&yacute;"},
+        {"þ", "&thorn;"},
+        {"ÿ", "&yuml;"},
+        {"Œ", "&OElig;"},
+        {"œ", "&oelig;"},
+        {"Š", "&Scaron;"},
+        {"š", "&scaron;"},
+        {"Ÿ", "&Yuml;"},
+        {"ˆ", "&circ;"},
+        {"˜", "&tilde;"},
+        {"–", "&ndash;"},
+        {"—", "&mdash;"},
+        {"‘", "&lsquo;"},
+        {"’", "&rsquo;"},
+        {"‚", "&sbquo;"},
+        {"„", "&bdquo;"},
+        {"†", "&dagger;"},
+        {"‡", "&Dagger;"},
+        {"…", "&hellip;"},
+        {"‰", "&permil;"},
+        {"‹", "&lsaquo;"},
+        {"›", "&rsaquo;"},
+        {"€", "&euro;"},
+        {"¡", "&iexcl;"},
+        {"¨", "&uml;"},
+        {"À", "&Agrave;"},
+        {"Á", "&Aacute;"},
+        {"Â", "&Acirc;"},
+        {"Ã", "&Atilde;"},
+        {"Ä", "&Auml;"},
+        {"Å", "&Aring;"},
+        {"Æ", "&AElig;"},
+        {"Ç", "&Ccedil;"},
+        {"È", "&Egrave;"},
+        {"É", "&Eacute;"},
+        {"Ê", "&Ecirc;"},
+        {"Ë", "&Euml;"},
+        {"Ì", "&Igrave;"},
+        {"Í", "&Iacute;"},
+        {"Î", "&Icirc;"},
+        {"Ï", "&Iuml;"},
+        {"Ð", "&ETH;"},
+        {"Ñ", "&Ntilde;"},
+        {"Ò", "&Ograve;"},
+        {"Ó", "&Oacute;"},
+        {"Ô", "&Ocirc;"},
+        {"Õ", "&Otilde;"},
+        {"Ö", "&Ouml;"},
+        {"Ø", "&Oslash;"},
+        {"Ù", "&Ugrave;"},
+        {"Ú", "&Uacute;"},
+        {"Û", "&Ucirc;"},
+        {"Ü", "&Uuml;"},
+        {"Ý", "&Yacute;"},
+        {"Þ", "&THORN;"},
+        {"ß", "&szlig;"},
+        {"ô", "&ocirc;"},
+        {"ö", "&ouml;"},
+    };
+    /**
+     * Map that associates the name of each entity (without '&amp;' and ';') to the character it represents.
+     */
+    private static final Map<String, String> entities = new HashMap<String, String>();
+
+    static {
+        for (int i = 0; i < specialCharacters.length; i++) {
+            String sequence = specialCharacters[i][1];
+            entities.put(sequence.substring(1, sequence.length() - 1), specialCharacters[i][0]);
+        }
+    }
+
+    private HtmlEntityDecoder() {
+    }
+
+    /**
+     * This method substitutes the special HTML characters eventually present in the input string
+     * with their corresponding visual representation.
+     * @param  input   String to normalize
+     * @return         Normalized string (the same instance, if it doesn't contain any special character)
+     */
+    public static String decode(String input) {
+        int ampersand = input.indexOf('&');
+        if (ampersand == -1) {
+            return input;
+        }
+        StringBuilder output = new StringBuilder(input.length());
+        int position = 0;
+        while (ampersand != -1) {
+            output.append(input, position, ampersand);
+            int semicolon = input.indexOf(';', ampersand + 1);
+            String replacement = null;
+            if (semicolon != -1 && semicolon - ampersand < MAXLENGTH) {
+                replacement = decodeEntity(input, ampersand + 1, semicolon);
+            }
+            if (replacement != null) {
+                output.append(replacement);
+                position = semicolon + 1;
+            } else {
+                output.append('&');
+                position = ampersand + 1;
+            }
+            ampersand = input.indexOf('&', position);
+        }
+        output.append(input, position, input.length());
+        return output.toString();
+    }
+
+    /**
+     * This method returns the character represented by an entity.
+     * @param  sequence The sequence of the entity, from '&amp;' to ';' (both included)
+     * @return          The character represented by the entity, or null if the sequence doesn't represent any character
+     */
+    public static String decodeEntity(CharSequence sequence) {
+        int length = sequence.length();
+        if (length < 3 || sequence.charAt(0) != '&' || sequence.charAt(length - 1) != ';') {
+            return null;
+        }
+        return decodeEntity(sequence, 1, length - 1);
+    }
+
+    /**
+     * This method returns the character represented by the name of an entity, or by its number.
+     * @param  sequence The sequence containing the entity
+     * @param  start    The position of the first character after the '&amp;'
+     * @param  end      The position of the ';'
+     * @return          The character represented by the entity, or null if it doesn't represent any character
+     */
+    private static String decodeEntity(CharSequence sequence, int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+        if (sequence.charAt(start) != '#') {
+            return entities.get(sequence.subSequence(start, end).toString());
+        }
+        /**
+         * Numeric entity: Decimal (&#232;) or hexadecimal (&#xE8;).
+         */
+        int radix = 10;
+        start++;
+        if (start < end && (sequence.charAt(start) == 'x' || sequence.charAt(start) == 'X')) {
+            radix = 16;
+            start++;
+        }
+        if (start >= end) {
+            return null;
+        }
+        int codePoint = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(sequence.charAt(i), radix);
+            if (digit == -1) {
+                return null;
+            }
+            codePoint = codePoint * radix + digit;
+            if (codePoint > Character.MAX_CODE_POINT) {
+                return null;
+            }
+        }
+        if (codePoint == 0 || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return null;
+        }
+        if (codePoint == 0xa0) {
+            return " ";
+        }
+        return new String(Character.toChars(codePoint));
+    }
+}
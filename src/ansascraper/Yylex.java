@@ -1,5 +1,6 @@
 package ansascraper;
 
+import documentclassifier.Scrapers.TextHandler;
 import java_cup.runtime.*;
 
 public class Yylex implements java_cup.runtime.Scanner {
@@ -13,116 +14,240 @@ public class Yylex implements java_cup.runtime.Scanner {
     private final int YY_NO_ANCHOR = 4;
     private final int YY_BOL = 65536;
     private final int YY_EOF = 65537;
-    private String title = "",  news = "",  link = "";                  //Strings that are set by the lexical analyzer during the reading of the HTML page, and passed as tokens.
+    private StringBuilder title = new StringBuilder(),  news = new StringBuilder(),  link = new StringBuilder();   //Buffers that are filled by the lexical analyzer during the reading of the HTML page, and passed as tokens.
+    private static final String LINESEPARATOR = System.getProperty("line.separator");
+    private static final java.util.regex.Pattern LONGSPACES = java.util.regex.Pattern.compile(" {72,}");
     private int tablesCounter = 0,  cellsCounter = 0,  spanCounter = 0;   //Variables that control if the lexical analyzer is currently inside equal tags, one inside each other.
     private boolean readNews = false;
-    /**
-     * 2-columns matrix containing, for each sequence corresponding to a special HTML character, the graphical rappresentation of such character.
-     * It is used before we pass the token representing the text of a news to the syntax analyzer, to make sure that the text of the token doesn't contain
-     * sequences of the format &[qualcosa];
-     */
-    private String specialCharacters[][] = {
-        {"\"", "&quot;"},
-        {"'", "&apos;"},
-        {"&", "&amp;"},
-        {"<", "&lt;"},
-        {">", "&gt;"},
-        {" ", "&nbsp;"},
-        {"¤", "&curren;"},
-        {"¢", "&cent;"},
-        {"£", "&pound;"},
-        {"¥", "&yen;"},
-        {"¦", "&brvbar;"},
-        {"§", "&sect;"},
-        {"©", "&copy;"},
-        {"ª", "&ordf;"},
-        {"«", "&laquo;"},
-        {"¬", "&not;"},
-        {"­", "&shy;"},
-        {"®", "&reg;"},
-        {"™", "&trade;"},
-        {"¯", "&macr;"},
-        {"°", "&deg;"},
-        {"±", "&plusmn;"},
-        {"¹", "&sup1;"},
-        {"²", "&sup2;"},
-        {"³", "&sup3;"},
-        {"´", "&acute;"},
-        {"µ", "&micro;"},
-        {"¶", "&para;"},
-        {"·", "&middot;"},
-        {"¸", "&cedil;"},
-        {"º", "&ordm;"},
-        {"»", "&raquo;"},
-        {"¼", "&frac14;"},
-        {"½", "&frac12;"},
-        {"¾", "&frac34;"},
-        {"¿", "&iquest;"},
-        {"×", "&times;"},
-        {"÷", "&divide;"},
-        {"à", "&agrave;"},
-        {"á", "&aacute;"},
-        {"â", "&acirc;"},
-        {"ã", "&atilde;"},
-        {"ä", "&auml;"},
-        {"å", "&aring;"},
-        {"æ", "&aelig;"},
-        {"ç", "&ccedil;"},
-        {"è", "&egrave;"},
-        {"é", "&eacute;"},
-        {"ê", "&ecirc;"},
-        {"ë", "&euml;"},
-        {"ì", "&igrave;"},
-        {"í", "&iacute;"},
-        {"î", "&icirc;"},
-        {"ï", "&iuml;"},
-        {"ð", "&eth;"},
-        {"ñ", "&ntilde;"},
-        {"ò", "&ograve;"},
-        {"ó", "&oacute;"},
-        {"õ", "&otilde;"},
-        {"ø", "&oslash;"},
-        {"ù", "&ugrave;"},
-        {"ú", "&uacute;"},
-        {"û", "&ucirc;"},
-        {"ü", "&uuml;"},
-        {"ý", "&yacute;"},
-        {"þ", "&thorn;"},
-        {"ÿ", "&yuml;"},
-        {"Œ", "&OElig;"},
-        {"œ", "&oelig;"},
-        {"Š", "&Scaron;"},
-        {"š", "&scaron;"},
-        {"Ÿ", "&Yuml;"},
-        {"ˆ", "&circ;"},
-        {"˜", "&tilde;"},
-        {"–", "&ndash;"},
-        {"—", "&mdash;"},
-        {"‘", "&lsquo;"},
-        {"’", "&rsquo;"},
-        {"‚", "&sbquo;"},
-        {"„", "&bdquo;"},
-        {"†", "&dagger;"},
-        {"‡", "&Dagger;"},
-        {"…", "&hellip;"},
-        {"‰", "&permil;"},
-        {"‹", "&lsaquo;"},
-        {"›", "&rsaquo;"},
-        {"€", "&euro;"},
-    };
-
     /**
      * Substitutes the special HTML characters eventually present in the input string,
      * with their corresponding visual representation.
-     * To do so it uses the matrix <code>specialCharacters</code>.
+     * To do so it uses the {@link HtmlEntityDecoder}, which reads the string only once.
      * @param  input    String to normalize
      * @return          Normalized string
      */
     private String replaceSpecialCharacters(String input) {
-        for (int i = 0; i < specialCharacters.length; i++) {
-            input = input.replaceAll(specialCharacters[i][1], specialCharacters[i][0]);
+        return HtmlEntityDecoder.decode(input);
+    }
+
+    /**
+     * If not null, the handler that receives the title and the text of the news while they are read: In this case the text
+     * is not accumulated inside a string, and the token that represents it (passed to the syntax analyzer) is empty.
+     */
+    private TextHandler handler = null;
+    private StringBuilder specialCharacter = new StringBuilder();       //The sequence of a special HTML character currently being read (&[qualcosa];)
+    private StringBuilder spaces = new StringBuilder();                 //The spaces read after the last character that has been passed to the handler
+    private boolean isNewsStarted = false, areSpacesRemoved = false;
+    private char[] newsBuffer = new char[512];
+    private int newsLength = 0;
+
+    /**
+     * This method sets the handler that will receive the title and the text of the news while they are read, instead
+     * of accumulating them inside the strings passed with the tokens to the syntax analyzer.
+     * The title and the text passed to the handler are the same that would have been passed with the tokens.
+     * @param  handler  The handler of the title and the text of the news
+     */
+    public void setTextHandler(TextHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * This method prepares the lexical analyzer to read a new document from the reader specified as input parameter, so
+     * that the same instance (with its buffers, already grown to the dimension of the previous documents) can be reused
+     * for many documents, instead of creating a new one for each of them.
+     * All the state of the previous document is discarded; the handler, instead, must be set again.
+     * @param  reader      The reader of the new document: If it is not a BufferedReader, it is wrapped in one
+     * @param  bufferSize  The minimum dimension of the buffer of the characters read
+     */
+    public void reset(java.io.Reader reader, int bufferSize) {
+        if (null == reader) {
+            throw (new Error("Error: Bad input stream initializer."));
+        }
+        yy_reader = (reader instanceof java.io.BufferedReader) ? (java.io.BufferedReader) reader : new java.io.BufferedReader(reader);
+        if (yy_buffer.length < bufferSize) {
+            yy_buffer = new char[bufferSize];
+        }
+        yy_buffer_read = 0;
+        yy_buffer_index = 0;
+        yy_buffer_start = 0;
+        yy_buffer_end = 0;
+        yy_at_bol = true;
+        yy_lexical_state = YYINITIAL;
+        yy_eof_done = false;
+        yy_last_was_cr = false;
+        title.setLength(0);
+        news.setLength(0);
+        link.setLength(0);
+        tablesCounter = 0;
+        cellsCounter = 0;
+        spanCounter = 0;
+        readNews = false;
+        handler = null;
+        specialCharacter.setLength(0);
+        spaces.setLength(0);
+        isNewsStarted = false;
+        areSpacesRemoved = false;
+        newsLength = 0;
+    }
+
+    /**
+     * This method adds the current lexeme to the title, without creating a string for it.
+     */
+    private void appendTitle() {
+        title.append(yy_buffer, yy_buffer_start, yy_buffer_end - yy_buffer_start);
+    }
+
+    /**
+     * This method adds the current lexeme to the text of the current link, without creating a string for it.
+     */
+    private void appendLink() {
+        link.append(yy_buffer, yy_buffer_start, yy_buffer_end - yy_buffer_start);
+    }
+
+    /**
+     * This method adds the current lexeme to the news: If there is a handler, the lexeme is passed to it (substituting
+     * the special HTML characters), otherwise it is added to the buffer <code>news</code>.
+     */
+    private void appendNews() throws java.io.IOException {
+        if (handler == null) {
+            news.append(yy_buffer, yy_buffer_start, yy_buffer_end - yy_buffer_start);
+            return;
+        }
+        for (int i = yy_buffer_start; i < yy_buffer_end; i++) {
+            decodeCharacter(yy_buffer[i]);
+        }
+    }
+
+    /**
+     * This method adds a piece of text to the news, like the method {@link #appendNews() appendNews}.
+     * @param  piece    The piece of text to add
+     */
+    private void appendNews(CharSequence piece) throws java.io.IOException {
+        if (handler == null) {
+            news.append(piece);
+            return;
+        }
+        for (int i = 0; i < piece.length(); i++) {
+            decodeCharacter(piece.charAt(i));
+        }
+    }
+
+    /**
+     * This method substitutes the sequences of the special HTML characters while the text is read, one character at a time.
+     * @param  c        The next character of the text
+     */
+    private void decodeCharacter(char c) throws java.io.IOException {
+        if (specialCharacter.length() > 0) {
+            if (c == ';') {
+                specialCharacter.append(c);
+                String sequence = specialCharacter.toString();
+                String replacement = HtmlEntityDecoder.decodeEntity(sequence);
+                specialCharacter.setLength(0);
+                normalizeCharacters((replacement != null) ? replacement : sequence);
+                return;
+            }
+            if (specialCharacter.length() < HtmlEntityDecoder.MAXLENGTH - 1 && (Character.isLetterOrDigit(c) || c == '#')) {
+                specialCharacter.append(c);
+                return;
+            }
+            /**
+             * It wasn't the sequence of a special character: Its characters are left unchanged.
+             */
+            String sequence = specialCharacter.toString();
+            specialCharacter.setLength(0);
+            normalizeCharacters(sequence);
+        }
+        if (c == '&') {
+            specialCharacter.append(c);
+        } else {
+            normalizeCharacter(c);
+        }
+    }
+
+    private void normalizeCharacters(String characters) throws java.io.IOException {
+        for (int i = 0; i < characters.length(); i++) {
+            normalizeCharacter(characters.charAt(i));
+        }
+    }
+
+    /**
+     * This method removes, while the text is read, the spaces at the beginning and at the end of the news, and the first
+     * sequence of 72 or more spaces inside it, like it is done on the string <code>news</code> (see {@link #endNews endNews}).
+     * The spaces are kept aside until the next character that is not a space: Only then it is known that they are not at the end.
+     * @param  c        The next character of the text, without special HTML characters
+     */
+    private void normalizeCharacter(char c) throws java.io.IOException {
+        if (c <= ' ') {
+            if (isNewsStarted) {
+                spaces.append(c);
+            }
+            return;
+        }
+        if (spaces.length() > 0) {
+            int start = spaces.length(), end = spaces.length();
+            if (!areSpacesRemoved) {
+                for (int i = 0; i < spaces.length(); i = end + 1) {
+                    for (end = i; end < spaces.length() && spaces.charAt(end) == ' '; end++) {
+                    }
+                    if (end - i >= 72) {
+                        start = i;
+                        areSpacesRemoved = true;
+                        break;
+                    }
+                }
+            }
+            for (int i = 0; i < spaces.length(); i++) {
+                if (i < start || i >= end) {
+                    writeCharacter(spaces.charAt(i));
+                }
+            }
+            spaces.setLength(0);
+        }
+        isNewsStarted = true;
+        writeCharacter(c);
+    }
+
+    private void writeCharacter(char c) throws java.io.IOException {
+        if (newsLength == newsBuffer.length) {
+            handler.text(newsBuffer, 0, newsLength);
+            newsLength = 0;
+        }
+        newsBuffer[newsLength++] = c;
+    }
+
+    /**
+     * This method is called when the title of the news has been read, and returns it after having substituted the special HTML
+     * characters; if there is a handler, the title is also passed to it.
+     * @return         The title of the news
+     */
+    private String endTitle() throws java.io.IOException {
+        String decodedTitle = replaceSpecialCharacters(title.toString()).trim();
+        if (handler != null) {
+            handler.title(decodedTitle);
+        }
+        return decodedTitle;
+    }
+
+    /**
+     * This method is called when the text of the news has been read, and returns it after having substituted the special HTML
+     * characters, and removed the spaces at its beginning and at its end, and the first sequence of 72 or more spaces inside it.
+     * If there is a handler, the last characters are passed to it, and an empty string is returned.
+     * @return         The text of the news
+     */
+    private String endNews() throws java.io.IOException {
+        if (handler == null) {
+            String decodedNews = replaceSpecialCharacters(news.toString()).trim();
+            return LONGSPACES.matcher(decodedNews).replaceFirst("");
+        }
+        String sequence = specialCharacter.toString();
+        specialCharacter.setLength(0);
+        normalizeCharacters(sequence);
+        spaces.setLength(0);
+        if (newsLength > 0) {
+            handler.text(newsBuffer, 0, newsLength);
+            newsLength = 0;
         }
-        return input;
+        return "";
     }
     private java.io.BufferedReader yy_reader;
     private int yy_buffer_index;
@@ -571,10 +696,10 @@ public class Yylex implements java_cup.runtime.Scanner {
                             break;
                         case 4: {
                             if (yytext().contains("content_title_primopiano")) {
-                                title = "";
+                                title.setLength(0);
                                 yybegin(SCRAPINGTITLE);
                             } else if (yytext().contains("content_text_news") && !readNews) {
-                                news = "";
+                                news.setLength(0);
                                 yybegin(SCRAPINGDOCUMENT);
                             }
                         }
@@ -602,7 +727,7 @@ public class Yylex implements java_cup.runtime.Scanner {
                         case -8:
                             break;
                         case 8: {
-                            title += yytext();
+                            appendTitle();
                         }
                         case -9:
                             break;
@@ -613,9 +738,8 @@ public class Yylex implements java_cup.runtime.Scanner {
                             break;
                         case 10: {
                             if (cellsCounter == 0) {
-                                title = replaceSpecialCharacters(title);
                                 yybegin(SCRAPING);
-                                return new Symbol(sym.TITLE, title.trim());
+                                return new Symbol(sym.TITLE, endTitle());
                             } else {
                                 cellsCounter--;
                             }
@@ -623,27 +747,26 @@ public class Yylex implements java_cup.runtime.Scanner {
                         case -11:
                             break;
                         case 11: {
-                            news += yytext();
+                            appendNews();
                         }
                         case -12:
                             break;
                         case 12: {
-                            link = "";
+                            link.setLength(0);
                             yybegin(SCRAPINGLINKDOCUMENT);
                         }
                         case -13:
                             break;
                         case 13: {
-                            news += System.getProperty("line.separator");
+                            appendNews(LINESEPARATOR);
                         }
                         case -14:
                             break;
                         case 14: {
                             if (cellsCounter == 0) {
-                                news = replaceSpecialCharacters(news);
                                 yybegin(SCRAPING);
                                 readNews = true;
-                                return new Symbol(sym.TEXT, news.trim().replaceFirst(" {72,}", ""));
+                                return new Symbol(sym.TEXT, endNews());
                             } else {
                                 cellsCounter--;
                             }
@@ -657,10 +780,9 @@ public class Yylex implements java_cup.runtime.Scanner {
                             break;
                         case 16: {
                             if (spanCounter == 0) {
-                                news = replaceSpecialCharacters(news);
                                 yybegin(SCRAPING);
                                 readNews = true;
-                                return new Symbol(sym.TEXT, news.trim().replaceFirst(" {72,}", ""));
+                                return new Symbol(sym.TEXT, endNews());
                             } else {
                                 spanCounter--;
                             }
@@ -668,7 +790,7 @@ public class Yylex implements java_cup.runtime.Scanner {
                         case -17:
                             break;
                         case 17: {
-                            link += yytext();
+                            appendLink();
                         }
                         case -18:
                             break;
@@ -677,7 +799,7 @@ public class Yylex implements java_cup.runtime.Scanner {
                         case -19:
                             break;
                         case 19: {
-                            news += link;
+                            appendNews(link);
                             yybegin(SCRAPINGDOCUMENT);
                         }
                         case -20:
@@ -687,17 +809,17 @@ public class Yylex implements java_cup.runtime.Scanner {
                         case -21:
                             break;
                         case 22: {
-                            title += yytext();
+                            appendTitle();
                         }
                         case -22:
                             break;
                         case 23: {
-                            news += yytext();
+                            appendNews();
                         }
                         case -23:
                             break;
                         case 24: {
-                            link += yytext();
+                            appendLink();
                         }
                         case -24:
                             break;
@@ -0,0 +1,142 @@
+package documentclassifier;
+
+import documentclassifier.Scrapers.DocumentCharset;
+import documentclassifier.Scrapers.Scraper;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * This class groups the settings that determine how the title and the text of a document are read and transformed
+ * into its histogram: the scraper (with the charset used for the documents that don't declare it), the removal of stopwords
+ * and the stemming of terms.
+ * <p>
+ * In the graphical application these settings are read from the preferences (see {@link DocumentClassifierApp#getAnalysisConfiguration
+ * getAnalysisConfiguration}), while the batch classifier ({@link BatchClassifier}) builds an instance directly from the arguments
+ * of the command line: In this way the creation of a {@link Document} doesn't depend on the GUI, and it can be done by more threads
+ * at the same time.
+ * <p>
+ * An instance of this class is immutable: The list of stopwords is read only the first time it is requested (through the
+ * class {@link StopWords}, which shares it with the other configurations that use the same file), and then reused for every
+ * document pre-processed with this configuration.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public class AnalysisConfiguration {
+
+    private final Scraper scraper;
+    private final boolean isRemovalStopWords;
+    private final String stopWordsList;
+    private final boolean isStemming;
+    private final String stemmer;
+    private final Charset defaultCharset;
+    /**
+     * The set of stopwords read from the file, or null if it hasn't been requested yet.
+     */
+    private volatile Set<String> stopWords;
+
+    /**
+     * This constructor creates a new configuration with the settings specified as input parameters, and the default
+     * charset {@link DocumentCharset#DEFAULT} for the documents that don't declare it.
+     *
+     * @param scraper               The scraper used to extract the title and the text of each document.
+     * @param isRemovalStopWords    If the removal of stopwords from each document is enabled or not.
+     * @param stopWordsList         The path of the file containing the list of stopwords.
+     * @param isStemming            If the stemming of terms from each document is enabled or not.
+     * @param stemmer               The complete name of the class which implements the stemmer.
+     */
+    public AnalysisConfiguration(Scraper scraper, boolean isRemovalStopWords, String stopWordsList, boolean isStemming, String stemmer) {
+        this(scraper, isRemovalStopWords, stopWordsList, isStemming, stemmer, DocumentCharset.DEFAULT);
+    }
+
+    /**
+     * This constructor creates a new configuration with the settings specified as input parameters.
+     *
+     * @param scraper               The scraper used to extract the title and the text of each document.
+     * @param isRemovalStopWords    If the removal of stopwords from each document is enabled or not.
+     * @param stopWordsList         The path of the file containing the list of stopwords.
+     * @param isStemming            If the stemming of terms from each document is enabled or not.
+     * @param stemmer               The complete name of the class which implements the stemmer.
+     * @param defaultCharset        The charset used to decode the documents that don't declare their charset.
+     */
+    public AnalysisConfiguration(Scraper scraper, boolean isRemovalStopWords, String stopWordsList, boolean isStemming, String stemmer, Charset defaultCharset) {
+        this.scraper = scraper;
+        this.isRemovalStopWords = isRemovalStopWords;
+        this.stopWordsList = stopWordsList;
+        this.isStemming = isStemming;
+        this.stemmer = stemmer;
+        this.defaultCharset = defaultCharset;
+    }
+
+    /**
+     * Accessor method to read the scraper used to extract the title and the text of each document.
+     *
+     * @return                  The instance of the scraper.
+     */
+    public Scraper getScraper() {
+        return scraper;
+    }
+
+    /**
+     * Accessor method to read the charset used to decode the documents that don't declare their charset.
+     *
+     * @return                  The default charset of the documents.
+     */
+    public Charset getDefaultCharset() {
+        return defaultCharset;
+    }
+
+    /**
+     * Accessor method to read if the removal of stopwords from each document is enabled or not.
+     *
+     * @return                  A boolean value which indicates if the removal of stopwords is enabled or not.
+     */
+    public boolean isRemovalStopWords() {
+        return isRemovalStopWords;
+    }
+
+    /**
+     * Accessor method to read the path of the file containing the list of stopwords.
+     *
+     * @return                  The path of the file containing the list of stopwords.
+     */
+    public String getStopWordsList() {
+        return stopWordsList;
+    }
+
+    /**
+     * This method returns the set of stopwords to remove from each document, reading the list of stopwords the first
+     * time it is called.
+     *
+     * @return                  The set of stopwords, that can't be modified, or an empty set if the removal of stopwords
+     *                          is not enabled.
+     * @throws IOException
+     */
+    public Set<String> getStopWords() throws IOException {
+        Set<String> currentStopWords = stopWords;
+        if (currentStopWords == null) {
+            currentStopWords = isRemovalStopWords ? StopWords.getStopWords(stopWordsList) : Collections.<String>emptySet();
+            stopWords = currentStopWords;
+        }
+        return currentStopWords;
+    }
+
+    /**
+     * Accessor method to read if the stemming of terms from each document is enabled or not.
+     *
+     * @return                  A boolean value which indicates if the stemming of terms is enabled or not.
+     */
+    public boolean isStemming() {
+        return isStemming;
+    }
+
+    /**
+     * Accessor method to read the complete name of the class which implements the stemmer.
+     *
+     * @return                  The complete name of the class which implements the stemmer.
+     */
+    public String getStemmer() {
+        return stemmer;
+    }
+}
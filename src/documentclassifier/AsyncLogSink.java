@@ -0,0 +1,194 @@
+package documentclassifier;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class writes the records of a log (one per line) to a file without making the threads that produce them wait for
+ * the disk: The records are put in a bounded circular buffer, from which a background thread takes all the ones present
+ * at each time, writes them together, and flushes the file only once for the whole group.
+ * <p>
+ * If the buffer is full, the thread that writes a record waits until there is space for it, so no record is ever lost,
+ * and the memory used doesn't grow if the disk is slower than the producers.
+ * The file is written in UTF-8, and optionally compressed with GZIP: A compressed file opened to be appended to gets a
+ * new GZIP member, which the usual tools (like zcat) read together with the previous ones.
+ * <p>
+ * The records can be written by more threads at the same time. The method {@link #close close} must be called at the end,
+ * to write the records still in the buffer and close the file.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class AsyncLogSink implements Closeable {
+
+    /**
+     * The default number of records that the buffer can contain.
+     */
+    public static final int DEFAULTCAPACITY = 4096;
+    private static final int FILEBUFFERSIZE = 1 << 16;
+    private final String[] records;
+    private int head, size;
+    private boolean isClosed;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Writer writer;
+    private final Thread writerThread;
+    /**
+     * The first error met by the background thread, reported by {@link #close close}.
+     */
+    private volatile IOException error;
+
+    /**
+     * This constructor opens the file of the log, and starts the thread that writes it.
+     *
+     * @param file              The file of the log.
+     * @param append            True if the records must be added at the end of the file, false if it must be overwritten.
+     * @param compressed        True if the file must be compressed with GZIP.
+     * @param capacity          The maximum number of records waiting to be written.
+     * @throws IOException      If the file can't be opened.
+     */
+    public AsyncLogSink(File file, boolean append, boolean compressed, int capacity) throws IOException {
+        records = new String[Math.max(1, capacity)];
+        OutputStream stream = new FileOutputStream(file, append);
+        try {
+            if (compressed) {
+                stream = new GZIPOutputStream(stream, FILEBUFFERSIZE);
+            } else {
+                stream = new BufferedOutputStream(stream, FILEBUFFERSIZE);
+            }
+        } catch (IOException ex) {
+            stream.close();
+            throw ex;
+        }
+        writer = new OutputStreamWriter(stream, Charset.forName("UTF-8"));
+        writerThread = new Thread(new Runnable() {
+
+            public void run() {
+                writeRecords();
+            }
+        }, "AsyncLogSink " + file.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * This method adds a record to the log.
+     * It returns as soon as the record is in the buffer, waiting only if the buffer is full.
+     *
+     * @param record            The record, without the line separator.
+     * @throws IllegalStateException    If the log has already been closed.
+     */
+    public void write(String record) {
+        lock.lock();
+        try {
+            while (size == records.length && !isClosed) {
+                notFull.awaitUninterruptibly();
+            }
+            if (isClosed) {
+                throw new IllegalStateException("The log has already been closed");
+            }
+            records[(head + size) % records.length] = record;
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * This method is executed by the background thread: It takes all the records present in the buffer, writes them,
+     * and flushes the file, until the log is closed and the buffer is empty.
+     * If the file can't be written, the following records are discarded (so the producers never remain blocked), and
+     * the error is reported when the log is closed.
+     */
+    private void writeRecords() {
+        String[] batch = new String[records.length];
+        while (true) {
+            int batchSize;
+            lock.lock();
+            try {
+                while (size == 0 && !isClosed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (size == 0) {
+                    return;
+                }
+                batchSize = size;
+                for (int i = 0; i < batchSize; i++) {
+                    batch[i] = records[head];
+                    records[head] = null;
+                    head = (head + 1) % records.length;
+                }
+                size = 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (error == null) {
+                try {
+                    for (int i = 0; i < batchSize; i++) {
+                        writer.write(batch[i]);
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                } catch (IOException ex) {
+                    error = ex;
+                }
+            }
+            for (int i = 0; i < batchSize; i++) {
+                batch[i] = null;
+            }
+        }
+    }
+
+    /**
+     * This method waits until all the records already added have been written, and closes the file.
+     * Calling it more than once has no effect.
+     *
+     * @throws IOException      If an error occurred while writing the records or closing the file.
+     */
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        boolean isInterrupted = false;
+        while (writerThread.isAlive()) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException ex) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } catch (IOException ex) {
+            if (error == null) {
+                error = ex;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
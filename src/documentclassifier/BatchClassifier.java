@@ -0,0 +1,382 @@
+package documentclassifier;
+
+import documentclassifier.Scrapers.ChannelScraper;
+import documentclassifier.Scrapers.DocumentCharset;
+import documentclassifier.Scrapers.Scraper;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Entry point to classify documents from the command line, without the graphical interface and without reading or
+ * modifying the preferences of the application.
+ * <p>
+ * All settings are passed explicitly as arguments: The training set is read and compiled into an inverted index only once,
+ * then the input documents (files, directories, or a list of paths read from the standard input) are classified in parallel
+ * by a pool of threads, and for each one of them the estimated category and its score (the distance, or the cosine for the
+ * TF-IDF, of the nearest document of that category) are written in TSV or JSON format, in the same order of the input.
+ * <p>
+ * Usage:
+ * <pre>
+ * java -cp DocumentClassifier.jar documentclassifier.BatchClassifier -trainingSet &lt;directory&gt; [options] [file|directory|-]...
+ *
+ *  -trainingSet &lt;directory&gt;    The directory of the training set (required).
+ *  -metric &lt;name&gt;              TF-IDF (default) or Bhattacharrya.
+ *  -knn &lt;K&gt;                    The value of K for the K-NN (default 1).
+ *  -scraper &lt;class&gt;           The complete name of the scraper's class (default documentclassifier.Scrapers.ANSAScraper).
+ *  -charset &lt;name&gt;             The charset of the documents that don't declare it (default ISO-8859-1).
+ *  -stopWords &lt;file&gt;           The file with the list of stopwords to remove (default: no removal).
+ *  -stemmer &lt;class&gt;           The complete name of the stemmer's class (default org.tartarus.snowball.ext.italianStemmer).
+ *  -noStemming                 Disables the stemming of terms.
+ *  -noSnapshot                 Reads the training set always from its files, without using (or writing) its snapshot.
+ *  -bufferSize &lt;N&gt;            The dimension of the buffers used to read the documents (default 16384, only for the scrapers that read from a channel).
+ *  -threads &lt;N&gt;               The number of threads that classify the documents (default: number of processors).
+ *  -format tsv|json            The format of the output (default tsv).
+ *  -output &lt;file&gt;              The file where the results are written (default: standard output).
+ * </pre>
+ * If no input is specified, or if the input is '-', the paths of the documents are read from the standard input, one for each row.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public class BatchClassifier {
+
+    /**
+     * The maximum number of documents, for each thread, whose classification can be in progress while the output of
+     * the previous ones is being written: It limits the memory used when the input is very big.
+     */
+    private static final int DOCUMENTSPERTHREAD = 16;
+    private KNNClassifier classifier;
+    private AnalysisConfiguration configuration;
+    private int KNN;
+    private boolean isJSON;
+
+    /**
+     * This constructor creates a new batch classifier.
+     *
+     * @param classifier        The classifier, with the training set already compiled.
+     * @param configuration     The settings used to read and pre-process the input documents, that must be the same used for the training set.
+     * @param KNN               The value of K for the K-NN.
+     * @param isJSON            True if the results must be written in JSON format, false for TSV.
+     */
+    BatchClassifier(KNNClassifier classifier, AnalysisConfiguration configuration, int KNN, boolean isJSON) {
+        this.classifier = classifier;
+        this.configuration = configuration;
+        this.KNN = KNN;
+        this.isJSON = isJSON;
+    }
+
+    /**
+     * Main method launching the batch classification.
+     *
+     * @param args              The arguments of the command line (see the description of the class).
+     */
+    public static void main(String[] args) {
+        /**
+         * The error messages of the other classes must be printed on the standard error, and not shown in a window.
+         */
+        System.setProperty("java.awt.headless", "true");
+        try {
+            String trainingSetDirectory = null;
+            String metric = "TF-IDF";
+            int KNN = 1;
+            String scraper = "documentclassifier.Scrapers.ANSAScraper";
+            String charset = DocumentCharset.DEFAULT.name();
+            String stopWordsList = null;
+            String stemmer = "org.tartarus.snowball.ext.italianStemmer";
+            boolean isStemming = true;
+            boolean isUsingSnapshot = true;
+            int bufferSize = ChannelScraper.DEFAULTBUFFERSIZE;
+            int numberThreads = Runtime.getRuntime().availableProcessors();
+            String format = "tsv";
+            String outputFile = null;
+            List<String> inputs = new ArrayList<String>();
+
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("-noStemming")) {
+                    isStemming = false;
+                } else if (option.equals("-noSnapshot")) {
+                    isUsingSnapshot = false;
+                } else if (option.startsWith("-") && !option.equals("-")) {
+                    if (i + 1 >= args.length) {
+                        usage("Missing value for the option " + option);
+                        return;
+                    }
+                    String value = args[++i];
+                    if (option.equals("-trainingSet")) {
+                        trainingSetDirectory = value;
+                    } else if (option.equals("-metric")) {
+                        metric = value;
+                    } else if (option.equals("-knn")) {
+                        KNN = Integer.parseInt(value);
+                    } else if (option.equals("-scraper")) {
+                        scraper = value;
+                    } else if (option.equals("-charset")) {
+                        charset = value;
+                    } else if (option.equals("-stopWords")) {
+                        stopWordsList = value;
+                    } else if (option.equals("-stemmer")) {
+                        stemmer = value;
+                    } else if (option.equals("-bufferSize")) {
+                        bufferSize = Integer.parseInt(value);
+                    } else if (option.equals("-threads")) {
+                        numberThreads = Integer.parseInt(value);
+                    } else if (option.equals("-format")) {
+                        format = value;
+                    } else if (option.equals("-output")) {
+                        outputFile = value;
+                    } else {
+                        usage("Unknown option " + option);
+                        return;
+                    }
+                } else {
+                    inputs.add(option);
+                }
+            }
+            if (trainingSetDirectory == null) {
+                usage("The directory of the training set is required");
+                return;
+            }
+            if (!metric.equals("TF-IDF") && !metric.equals("Bhattacharrya")) {
+                usage("Unknown metric " + metric);
+                return;
+            }
+            if (!format.equals("tsv") && !format.equals("json")) {
+                usage("Unknown format " + format);
+                return;
+            }
+            if (KNN < 1 || numberThreads < 1 || bufferSize < 1) {
+                usage("The values of K, of the number of threads and of the dimension of the buffers must be greater than 0");
+                return;
+            }
+            if (stopWordsList != null && !new File(stopWordsList).isFile()) {
+                usage("The specified stopwords file (" + stopWordsList + ") is not valid");
+                return;
+            }
+            if (!Charset.isSupported(charset)) {
+                usage("Unsupported charset " + charset);
+                return;
+            }
+            Class.forName(stemmer);
+            Scraper scraperInstance = (Scraper) Class.forName(scraper).getDeclaredConstructor().newInstance();
+            if (scraperInstance instanceof ChannelScraper) {
+                ((ChannelScraper) scraperInstance).setBufferSize(bufferSize);
+            }
+            AnalysisConfiguration configuration = new AnalysisConfiguration(
+                    scraperInstance, stopWordsList != null, stopWordsList, isStemming, stemmer, Charset.forName(charset));
+
+            long start = System.currentTimeMillis();
+            TrainingSetLoader loader = new TrainingSetLoader(configuration, numberThreads);
+            loader.setUsingSnapshot(isUsingSnapshot);
+            /**
+             * The texts of the training set are never shown, so they are not kept in memory.
+             */
+            loader.setRetainingText(false);
+            Set<Set<Document>> trainingSet = loader.load(new File(trainingSetDirectory));
+            if (trainingSet == null) {
+                usage("The path specified for the training set directory (" + trainingSetDirectory + ") is not valid");
+                return;
+            }
+            TrainingSetIndex trainingSetIndex = new TrainingSetIndex(trainingSet);
+            System.err.println("Training set: " + trainingSetIndex.size() + " documents in " + trainingSet.size() + " categories ("
+                    + loader.getNumberDuplicates() + " duplicated files, " + loader.getNumberReadFiles() + " files scraped), read in "
+                    + (System.currentTimeMillis() - start) + " ms");
+
+            BatchClassifier batchClassifier = new BatchClassifier(new KNNClassifier(trainingSetIndex, metric), configuration, KNN, format.equals("json"));
+            Writer output = new BufferedWriter(new OutputStreamWriter(
+                    (outputFile == null) ? System.out : new FileOutputStream(outputFile), "UTF-8"));
+            ExecutorService executor = Executors.newFixedThreadPool(numberThreads);
+            try {
+                start = System.currentTimeMillis();
+                int numberDocuments = batchClassifier.classify(listInputFiles(inputs), executor, numberThreads * DOCUMENTSPERTHREAD, output);
+                System.err.println("Classified " + numberDocuments + " documents in " + (System.currentTimeMillis() - start) + " ms");
+                if (isStemming) {
+                    StemCache stemCache = StemmerFactory.getFactory(stemmer).getCache();
+                    System.err.println("Stem cache: " + stemCache.getHits() + " hits, " + stemCache.getMisses() + " misses");
+                }
+            } finally {
+                executor.shutdown();
+                output.close();
+            }
+        } catch (Exception ex) {
+            System.err.println(ex.toString());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * This method prints an error message, followed by the usage of the program, on the standard error, and then terminates
+     * the program.
+     */
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: java documentclassifier.BatchClassifier -trainingSet <directory> [-metric TF-IDF|Bhattacharrya] [-knn K]"
+                + " [-scraper class] [-charset name] [-stopWords file] [-stemmer class] [-noStemming] [-noSnapshot] [-bufferSize N] [-threads N] [-format tsv|json] [-output file]"
+                + " [file|directory|-]...");
+        System.exit(2);
+    }
+
+    /**
+     * This method returns the list of the files to classify: The files specified as input are returned as they are, the
+     * directories are replaced by the files they contain (recursively, in alphabetical order), and the input '-' (or no
+     * input at all) is replaced by the paths read from the standard input.
+     *
+     * @param inputs            The inputs specified on the command line.
+     * @return                  The list of files to classify.
+     * @throws Exception
+     */
+    private static List<File> listInputFiles(List<String> inputs) throws Exception {
+        List<File> files = new ArrayList<File>();
+        if (inputs.isEmpty()) {
+            inputs = Arrays.asList("-");
+        }
+        for (String input : inputs) {
+            if (input.equals("-")) {
+                BufferedReader BR = new BufferedReader(new InputStreamReader(System.in));
+                String row;
+                while ((row = BR.readLine()) != null) {
+                    if (!row.trim().isEmpty()) {
+                        files.add(new File(row.trim()));
+                    }
+                }
+            } else {
+                addFiles(new File(input), files);
+            }
+        }
+        return files;
+    }
+
+    private static void addFiles(File file, List<File> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            Arrays.sort(children);
+            for (File child : children) {
+                addFiles(child, files);
+            }
+        } else {
+            files.add(file);
+        }
+    }
+
+    /**
+     * This method classifies the files provided in input, using the threads of the executor, and writes the results in the
+     * same order of the files.
+     * At most 'window' documents are classified ahead of the first one whose result has not been written yet.
+     *
+     * @param files             The files to classify.
+     * @param executor          The executor whose threads classify the documents.
+     * @param window            The maximum number of documents whose classification can be in progress at the same time.
+     * @param output            Where the results must be written.
+     * @return                  The number of classified documents.
+     * @throws Exception
+     */
+    int classify(List<File> files, ExecutorService executor, int window, Writer output) throws Exception {
+        LinkedList<Future<String>> results = new LinkedList<Future<String>>();
+        int numberDocuments = 0;
+        if (isJSON) {
+            output.write("[");
+        }
+        for (final File file : files) {
+            results.add(executor.submit(new Callable<String>() {
+
+                public String call() {
+                    return classify(file);
+                }
+            }));
+            if (results.size() >= window) {
+                writeResult(results.removeFirst().get(), numberDocuments++, output);
+            }
+        }
+        while (!results.isEmpty()) {
+            writeResult(results.removeFirst().get(), numberDocuments++, output);
+        }
+        if (isJSON) {
+            output.write((numberDocuments > 0) ? "\n]\n" : "]\n");
+        }
+        output.flush();
+        return numberDocuments;
+    }
+
+    private void writeResult(String result, int index, Writer output) throws Exception {
+        if (isJSON) {
+            output.write((index > 0) ? ",\n" : "\n");
+            output.write(result);
+        } else {
+            output.write(result);
+            output.write("\n");
+        }
+    }
+
+    /**
+     * This method classifies a single file, and returns its result already formatted.
+     * It can be executed at the same time by more threads.
+     *
+     * @param file              The file to classify.
+     * @return                  The row (TSV) or the object (JSON) with the path of the file, its estimated category and its score.
+     */
+    String classify(File file) {
+        String path = file.getPath();
+        try {
+            /**
+             * The text of the query is never shown, so it is not kept in memory.
+             */
+            Document query = Document.readDocument(file, null, configuration, false);
+            if (query.getHistogram() == null) {
+                return formatError(path, "The histogram of the document can't be created");
+            }
+            List<Map<String, Object>> infoDocuments = classifier.rank(query, KNN);
+            if (infoDocuments.isEmpty()) {
+                return formatError(path, "The training set is empty");
+            }
+            /**
+             * With a K greater than the size of the training set, all of its documents are the neighbours of the query.
+             */
+            String category = KNNClassifier.determineCategory(infoDocuments, Math.min(KNN, infoDocuments.size()));
+            /**
+             * The score of the category is the distance of its document nearest to the query.
+             */
+            double score = Double.NaN;
+            for (Map<String, Object> infoDocument : infoDocuments) {
+                if (((Set<?>) infoDocument.get("Categories")).contains(category)) {
+                    score = (Double) infoDocument.get("Distance");
+                    break;
+                }
+            }
+            if (isJSON) {
+                return "{\"path\": " + JSON.quote(path) + ", \"category\": " + JSON.quote(category) + ", \"score\": " + JSON.number(score) + "}";
+            } else {
+                return path + "\t" + category + "\t" + score;
+            }
+        } catch (Exception ex) {
+            return formatError(path, ex.toString());
+        }
+    }
+
+    /**
+     * This method formats the result of a file that could not be classified: In TSV format the category and the score are
+     * empty, and the message is printed on the standard error.
+     */
+    private String formatError(String path, String message) {
+        if (isJSON) {
+            return "{\"path\": " + JSON.quote(path) + ", \"error\": " + JSON.quote(message) + "}";
+        } else {
+            System.err.println(path + ": " + message);
+            return path + "\t\t";
+        }
+    }
+}
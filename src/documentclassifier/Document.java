@@ -1,16 +1,17 @@
 package documentclassifier;
 
-import java.io.BufferedReader;
+import documentclassifier.Metriche.SparseVector;
+import documentclassifier.Metriche.TermDictionary;
+import documentclassifier.Scrapers.ChannelScraper;
+import documentclassifier.Scrapers.Scraper;
+import documentclassifier.Scrapers.StreamingScraper;
 import java.io.File;
-import java.io.FileReader;
-import java.lang.reflect.Method;
-import java.util.Collections;
-import java.util.HashMap;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
-import org.tartarus.snowball.SnowballProgram;
 
 /**
  * This class represents a document, and contains a title, a text, the list of categories it belongs to,
@@ -22,6 +23,13 @@ import org.tartarus.snowball.SnowballProgram;
 class Document {
 
     private String title,  text,  path;
+    /**
+     * If the text is not kept in memory (see {@link #releaseText releaseText}), the settings (scraper and default charset)
+     * used to read it again from the original file, and the last text read, that can be removed by the garbage collector
+     * when the memory is needed.
+     */
+    private volatile AnalysisConfiguration textConfiguration;
+    private volatile SoftReference<String> lastReadText;
     /**
      * A document can also belong to more than one category, of copies of it are present in multiple
      * subdirectories of the training set. To model this situation, the categories a document belongs
@@ -29,10 +37,19 @@ class Document {
      */
     private Set<String> categories;
     /**
-     * The histogram of each document is represented as a map, having as keys the strings of its unique terms,
-     * and as values the relative frequency of each term inside the document.
+     * A 64 bit hash of the title and the text of the document, used to find in constant time the copies of the same
+     * document present in more categories of the training set.
+     */
+    private long contentHash;
+    /**
+     * The initial value of the hash of the content (the offset basis of the FNV-1a algorithm).
      */
-    private Map<String, Double> histogram;
+    static final long CONTENTHASHBASIS = 0xcbf29ce484222325L;
+    /**
+     * The histogram of each document is represented as a sparse vector, containing the identifiers (inside the
+     * global {@link TermDictionary}) of its unique terms, and the relative frequency of each term inside the document.
+     */
+    private SparseVector histogram;
 
     /**
      * This constructor creates a new document with the title, text, initial category, and URL specified as
@@ -46,12 +63,27 @@ class Document {
      * @param path              The URL (local or remote) from where it is possible to read the original document file.
      */
     public Document(String title, String text, String initialCategory, String path) {
+        this(title, text, initialCategory, path, DocumentClassifierApp.getApplication().getAnalysisConfiguration());
+    }
+
+    /**
+     * This constructor creates a new document like the previous one, but its histogram is created with the settings
+     * specified as input parameter, instead than with the current preferences of the application.
+     * 
+     * @param title             The title of the document.
+     * @param text              The complete text of the document.
+     * @param initialCategory   One of the categories the document belongs to, or null for a query document.
+     * @param path              The URL (local or remote) from where it is possible to read the original document file.
+     * @param configuration     The settings used to pre-process the text of the document.
+     */
+    public Document(String title, String text, String initialCategory, String path, AnalysisConfiguration configuration) {
         try {
             this.title = title;
             this.text = text;
             this.categories = new HashSet<String>();
             categories.add(initialCategory);
             this.path = path;
+            this.contentHash = calculateContentHash(title, text);
             /**
              * When the document is created, the histogram of its terms is generated, and this it will be
              * be used by the current metric, to calculate the distance between this document and the
@@ -62,12 +94,88 @@ class Document {
              * (like stopwords), now should instead be taken into consideration, or, analogously, terms that
              * before were stemmed to their common root, now must be considered as different.
              */
-            this.histogram = createHistogram();
+            this.histogram = createHistogram(configuration, initialCategory == null);
         } catch (Exception ex) {
             DocumentClassifierView.showErrorMessage(ex.toString());
         }
     }
 
+    /**
+     * This constructor creates a document whose histogram has already been calculated, for example when the training
+     * set is read from a {@link TrainingSetSnapshot}: The text is not pre-processed again.
+     *
+     * @param title             The title of the document.
+     * @param text              The complete text of the document.
+     * @param categories        The categories the document belongs to.
+     * @param path              The URL (local or remote) from where it is possible to read the original document file.
+     * @param contentHash       The hash of the title and the text of the document.
+     * @param histogram         The histogram of the document.
+     */
+    Document(String title, String text, Set<String> categories, String path, long contentHash, SparseVector histogram) {
+        this.title = title;
+        this.text = text;
+        this.categories = new HashSet<String>(categories);
+        this.path = path;
+        this.contentHash = contentHash;
+        this.histogram = histogram;
+    }
+
+    /**
+     * This constructor creates a new document from the title, the text and the histogram obtained by a {@link TextAnalyzer},
+     * which has received them directly from a streaming scraper.
+     *
+     * @param analyzer          The analyzer that has received all the document.
+     * @param initialCategory   One of the categories the document belongs to, or null for a query document.
+     * @param path              The URL (local or remote) from where it is possible to read the original document file.
+     */
+    Document(TextAnalyzer analyzer, String initialCategory, String path) {
+        this.title = analyzer.getTitle();
+        this.text = analyzer.getText();
+        this.categories = new HashSet<String>();
+        categories.add(initialCategory);
+        this.path = path;
+        this.contentHash = analyzer.getContentHash();
+        this.histogram = analyzer.createHistogram();
+    }
+
+    /**
+     * This method reads a document from a file, with the scraper and the settings specified as input parameters.
+     * If the scraper is a {@link StreamingScraper}, the histogram of the document is created while the file is read, and
+     * the text is kept in memory only if requested; otherwise the title and the text are read first, and then analyzed.
+     * If the scraper is also a {@link ChannelScraper}, the file is read directly from its channel, reusing the buffers and
+     * the analyzers of the current thread.
+     *
+     * @param file              The file to read.
+     * @param initialCategory   One of the categories the document belongs to, or null for a query document.
+     * @param configuration     The settings used to read and pre-process the document.
+     * @param isRetainingText   True if the text of the document must be kept (for example to show it in the GUI), false
+     *                          if only its title and histogram are needed (possible only with a streaming scraper).
+     * @return                  The document read from the file.
+     * @throws Exception        If the document can't be read.
+     */
+    static Document readDocument(File file, String initialCategory, AnalysisConfiguration configuration, boolean isRetainingText) throws Exception {
+        Scraper scraper = configuration.getScraper();
+        FileInputStream IS = new FileInputStream(file);
+        try {
+            if (scraper instanceof StreamingScraper) {
+                TextAnalyzer analyzer = new TextAnalyzer(configuration, isRetainingText, initialCategory == null);
+                if (scraper instanceof ChannelScraper) {
+                    ((ChannelScraper) scraper).getDocument(IS.getChannel(), configuration.getDefaultCharset(), analyzer);
+                } else {
+                    ((StreamingScraper) scraper).getDocument(IS, null, configuration.getDefaultCharset(), analyzer);
+                }
+                return new Document(analyzer, initialCategory, file.getCanonicalPath());
+            }
+            String[] titleText = scraper.getDocument(IS, null, configuration.getDefaultCharset());
+            if (titleText == null || titleText.length < 2) {
+                throw new IOException("The document " + file + " can't be read");
+            }
+            return new Document(titleText[0], titleText[1], initialCategory, file.getCanonicalPath(), configuration);
+        } finally {
+            IS.close();
+        }
+    }
+
     /**
      * This constructor creates a new document without any category.
      * It is used to create an instance of this class representing the current query document.
@@ -98,133 +206,22 @@ class Document {
      * is pre-processed (removing stopwords and stemming the remaining terms) before calculating the frequency
      * of each one of its terms.
      * 
-     * @return                  The histogram of the terms of the document, represented by a map that has
-     *                          keys (the terms) of type {@link String}, and values (their relative frequencies)
-     *                          of type {@link Double}.
+     * @param configuration     The settings used to pre-process the text of the document.
+     * @param isQuery           True if the document is a query, whose terms unknown to the training set are ignored.
+     * @return                  The histogram of the terms of the document, represented by a {@link SparseVector}
+     *                          containing the identifiers of the terms and their relative frequencies.
      */
-    private Map<String, Double> createHistogram() throws Exception {
-
-        DocumentClassifierApp application = DocumentClassifierApp.getApplication();
-        boolean isStemming = application.isStemming(false);
-        boolean isRemovalStopWords = application.isRemovalStopWords(false);
-
-        /**
-         * Even if the user has chosen (through the Preferences panel) not to apply stemming to
-         * document terms, it is necessary to create the classes that do it, otherwise the compiler
-         * will generate an error.
-         */
-        Class stemClass = Class.forName(application.getStemmer(false));
-        SnowballProgram stemmer = (SnowballProgram) stemClass.newInstance();
-        @SuppressWarnings("unchecked")
-        Method stemMethod = stemClass.getMethod("stem", new Class[0]);
-
-        Object[] emptyArgs = new Object[0];
-        String specialCharacters = " \t\n\r\f,;.:!'\"()?[]=-@";
-
-        Map<String, Double> documentHistogram = new HashMap<String, Double>();
-        String currentToken;
-        Double frequency;
-        int weight;
-        String row;
-
-        /**
-         * I build the set of stopwords, by reading the appropriate file.
-         */
-        Set<String> stopWordsList = new HashSet<String>();
-        BufferedReader stopWordsBR;
-        File stopWordsListFile = new File(DocumentClassifierApp.getApplication().getStopWordsList(false));
-        String[] fields;
-        if (isRemovalStopWords) {
-            /**
-             * If the user has chosen not to enable the removal of stopwords, no element is added
-             * to the set, which remains empty.
-             */
-            stopWordsBR = new BufferedReader(new FileReader(stopWordsListFile));
-            while ((row = stopWordsBR.readLine()) != null) {
-                if (!row.isEmpty()) {
-                    fields = row.split("|");
-                    if (!fields[0].startsWith(" ")) {
-                        stopWordsList.add(fields[0].trim());
-                    }
-                }
-            }
-            stopWordsBR.close();
-        }
-
+    private SparseVector createHistogram(AnalysisConfiguration configuration, boolean isQuery) throws Exception {
         /**
          * Pre-processing of the text.
-         * The title and text of the document are represented as two strings, belonging to an array,
-         * such that I will be able to apply the same operations to both of them, but weighting
-         * the terms in a different way depending if they belong to the title or the text.
-         */
-        String[] titleText = new String[2];
-        titleText[0] = title;
-        titleText[1] = text;
-        for (int j = 0; j <= 1; j++) {
-            if (j == 0) {
-                /**
-                 * If I'm reading the title of the document-->Its terms have a double weight than the terms
-                 * of the text, because they are more directly related to the argument and context of the document,
-                 * than the terms of the text.
-                 */
-                weight = 2;
-            } else {
-                weight = 1;
-            }
-            titleText[j] = titleText[j].toLowerCase();
-            StringTokenizer ST = new StringTokenizer(titleText[j], specialCharacters);
-            while (ST.hasMoreTokens()) {
-                currentToken = ST.nextToken();
-                /**
-                 * Removal of stopwords (if enabled by the user) and of numbers (in any case).
-                 * The word 'removal' is inappropriate, because what is really done is simply to not take
-                 * into consideration a term if it is present in the stopwords list, or if it represents
-                 * a number. In these two cases the term is not added to the map which represents the
-                 * histogram of the document.
-                 */
-                if (!stopWordsList.contains(currentToken) && !currentToken.matches("\\d+")) {
-
-                    if (isStemming) {
-                        /**
-                         * Stemming of the current term: The stemmer creates a new term containing the root
-                         * of the one given in input.
-                         */
-                        stemmer.setCurrent(currentToken);
-                        stemMethod.invoke(stemmer, emptyArgs);
-                        currentToken = stemmer.getCurrent();
-                    }
-                    /**
-                     * The frequency of the current term (eventually stemmed to its root) is read from the
-                     * document's histogram, and updated (depending on the weight assigned to the current
-                     * term).
-                     */
-                    frequency = documentHistogram.get(currentToken);
-                    if (frequency == null) {
-                        frequency = 0.0;
-                    }
-                    documentHistogram.put(currentToken, frequency + weight);
-                }
-            }
-        }
-
-        /**
-         * The histogram has been completed-->Now it is necessary to normalize its frequencies
-         * to the length of the document, making them relative.
-         */
-        double normalizationFactor = 0;
-        for (double I : documentHistogram.values()) {
-            //Calculation of the document's length after pre-processing
-            normalizationFactor += I;
-        }
-        //Normalization of frequencies (from absolute to relative)
-        for (String Token : documentHistogram.keySet()) {
-            documentHistogram.put(Token, documentHistogram.get(Token) / normalizationFactor);
-        }
-        /**
-         * I make sure that, once created, the histogram of this document can't be modified anymore
-         * (accidentally or intentionally) by other classes that read it.
+         * The title and the text of the document are analyzed in the same way, but weighting the terms
+         * in a different way depending if they belong to the title or the text: The terms of the title
+         * are more directly related to the argument and context of the document, than the terms of the text.
          */
-        return Collections.unmodifiableMap(documentHistogram);
+        TextAnalyzer analyzer = new TextAnalyzer(configuration, false, isQuery);
+        analyzer.addTerms(title, TextAnalyzer.TITLEWEIGHT);
+        analyzer.addTerms(text, TextAnalyzer.TEXTWEIGHT);
+        return analyzer.createHistogram();
     }
 
     /**
@@ -232,7 +229,7 @@ class Document {
      * 
      * @return                  The document's histogram.
      */
-    public Map<String, Double> getHistogram() {
+    public SparseVector getHistogram() {
         return histogram;
     }
 
@@ -271,7 +268,57 @@ class Document {
      * @return                  The text of the document represented by this instance.
      */
     public String getText() {
-        return text;
+        AnalysisConfiguration configuration = textConfiguration;
+        if (text != null || configuration == null) {
+            return text;
+        }
+        /**
+         * The text has not been kept in memory-->It is read again from the original file, and kept only until
+         * the memory is needed for something else.
+         */
+        String reloadedText = (lastReadText != null) ? lastReadText.get() : null;
+        if (reloadedText == null) {
+            try {
+                InputStream IS = new FileInputStream(path);
+                try {
+                    String[] titleText = configuration.getScraper().getDocument(IS, null, configuration.getDefaultCharset());
+                    if (titleText == null || titleText.length < 2) {
+                        return null;
+                    }
+                    reloadedText = titleText[1];
+                } finally {
+                    IS.close();
+                }
+            } catch (Exception ex) {
+                DocumentClassifierView.showErrorMessage(ex.toString());
+                return null;
+            }
+            lastReadText = new SoftReference<String>(reloadedText);
+        }
+        return reloadedText;
+    }
+
+    /**
+     * This method returns if the text of the document is kept in memory.
+     *
+     * @return                  True if the text is kept in memory, false if it is read again from the original file
+     *                          every time it is requested (or if it is not available).
+     */
+    boolean isTextRetained() {
+        return text != null;
+    }
+
+    /**
+     * This method removes the text of the document from memory, after that its histogram has been created.
+     * From this moment on, the text is read again from the original file (whose path must be the one of this document)
+     * only when it is requested, for example to show it in the GUI.
+     * The equality between documents is then determined through the hash of their content, calculated when they have been read.
+     *
+     * @param configuration     The settings (scraper and default charset) used to read the text again from the original file.
+     */
+    void releaseText(AnalysisConfiguration configuration) {
+        this.text = null;
+        this.textConfiguration = configuration;
     }
 
     /**
@@ -283,8 +330,68 @@ class Document {
         return title;
     }
 
+    /**
+     * Accessor method to read the hash of the title and the text of the document.
+     * 
+     * @return                  The 64 bit hash of the content of the document.
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * This method calculates the 64 bit hash (FNV-1a) of the title and the text of a document.
+     * Two documents with the same title and text have always the same hash; two different documents have the same
+     * hash only with a very low probability, so the hash can be used to find the candidate copies of a document, that
+     * must then be compared with the method {@link #equals equals}.
+     * 
+     * @param title             The title of the document.
+     * @param text              The text of the document.
+     * @return                  The 64 bit hash of the title and the text.
+     */
+    static long calculateContentHash(String title, String text) {
+        long hash = CONTENTHASHBASIS;
+        String[] titleText = {title, text};
+        for (String field : titleText) {
+            if (field != null) {
+                for (int i = 0; i < field.length(); i++) {
+                    hash = updateContentHash(hash, field.charAt(i));
+                }
+            }
+            hash = endContentHashField(hash, field == null);
+        }
+        return hash;
+    }
+
+    /**
+     * This method adds a character to a hash calculated with the method {@link #calculateContentHash calculateContentHash},
+     * so that the hash can also be calculated while the document is read (see {@link TextAnalyzer}).
+     *
+     * @param hash              The hash of the characters before the current one.
+     * @param c                 The current character.
+     * @return                  The hash updated with the current character.
+     */
+    static long updateContentHash(long hash, char c) {
+        hash = (hash ^ (c & 0xff)) * 0x100000001b3L;
+        return (hash ^ (c >>> 8)) * 0x100000001b3L;
+    }
+
+    /**
+     * This method adds to a hash the separator at the end of a field (the title or the text).
+     * A separator (not a valid character) after each field, so that for example the documents ("ab", "c") and
+     * ("a", "bc") have different hashes, and a null field is different from an empty one.
+     *
+     * @param hash              The hash of the characters of the field.
+     * @param isNull            True if the field is null.
+     * @return                  The hash updated with the separator.
+     */
+    static long endContentHashField(long hash, boolean isNull) {
+        return (hash ^ (isNull ? 0x1ff : 0x100)) * 0x100000001b3L;
+    }
+
     /**
      * Two documents are considered equals if they have both the same title and the same text.
+     * If the text of one of them is not kept in memory, the texts are compared through their hash.
      * 
      * @param obj
      * @return                  A boolean value indicating if the document provided in input is equal
@@ -299,10 +406,21 @@ class Document {
             return false;
         }
         final Document other = (Document) obj;
+        /**
+         * The hash is compared first: If it is different, the documents are surely different, and the (long) texts
+         * don't need to be compared.
+         */
+        if (this.contentHash != other.contentHash) {
+            return false;
+        }
         if (this.title != other.title && (this.title == null || !this.title.equals(other.title))) {
             return false;
         }
-        if (this.text != other.text && (this.text == null || !this.text.equals(other.text))) {
+        /**
+         * If the text of one of the documents is not kept in memory, the (64 bit) hash of the contents, together
+         * with the title, is enough to consider them equal.
+         */
+        if (this.text != null && other.text != null && !this.text.equals(other.text)) {
             return false;
         }
         return true;
@@ -310,9 +428,6 @@ class Document {
 
     @Override
     public int hashCode() {
-        int hash = 3;
-        hash = 71 * hash + (this.title != null ? this.title.hashCode() : 0);
-        hash = 71 * hash + (this.text != null ? this.text.hashCode() : 0);
-        return hash;
+        return (int) (contentHash ^ (contentHash >>> 32));
     }
 }
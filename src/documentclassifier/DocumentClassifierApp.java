@@ -3,7 +3,6 @@ package documentclassifier;
 
 import documentclassifier.Scrapers.Scraper;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -11,13 +10,14 @@ import java.io.UnsupportedEncodingException;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Logger;
@@ -74,14 +74,24 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
      * (the subsets are made of all the documents belonging to the same category).
      */
     private Set<Set<Document>> trainingSet;
+    /**
+     * The current training set compiled into an inverted index, used to rank its documents to a query.
+     */
+    private TrainingSetIndex trainingSetIndex;
+    /**
+     * The distances between all the documents of the current training set, calculated only when requested by the validation,
+     * or null if they haven't been calculated yet.
+     */
+    private SimilarityMatrix similarityMatrix;
     private int trainingSetSize = 0;
     /**
      * Configuration variables, corresponding to the preferences of the application.
      */
     private Scraper Scraper;
     private String trainingSetDirectory,  logFile,  stopWordsList,  metric;
-    private boolean isRemovalStopWords,  isStemming,  isStratified,  isLogging,  isOverwriteLogFile,  isVisualizeCurrentDocument,  isVisualizeDocumentsList;
+    private boolean isRemovalStopWords,  isStemming,  isStratified,  isSimilarityMatrix,  isLeaveOneOut,  isLogging,  isOverwriteLogFile,  isVisualizeCurrentDocument,  isVisualizeClassifications,  isKeepTexts;
     private String currentStemmer;
+    private Charset defaultCharset;
     private int KNN,  KFold,  maximumKNNValidation;
 
     /**
@@ -155,6 +165,17 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
             currentKey = MapDefaultPreferences.SCRAPER;
             Scraper = getScraperInstance(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
 
+            currentKey = MapDefaultPreferences.CHARSET;
+            String charsetName = preferences.get(currentKey, mapDefaultPreferences.get(currentKey));
+            if (!Charset.isSupported(charsetName)) {
+                /**
+                 * If the charset is not supported by this platform, the default one is used.
+                 */
+                charsetName = mapDefaultPreferences.get(currentKey);
+                preferences.put(currentKey, charsetName);
+            }
+            defaultCharset = Charset.forName(charsetName);
+
             currentKey = MapDefaultPreferences.isREMOVALSTOPWORDS;
             isRemovalStopWords = Boolean.parseBoolean(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
 
@@ -179,10 +200,13 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
             currentKey = MapDefaultPreferences.STEMMER;
             currentStemmer = preferences.get(currentKey, mapDefaultPreferences.get(currentKey));
 
+            currentKey = MapDefaultPreferences.isKEEPTEXTS;
+            isKeepTexts = Boolean.parseBoolean(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
+
             //(Re)Generation of the training set
             currentKey = MapDefaultPreferences.TRAININGSETDIRECTORY;
             trainingSetDirectory = preferences.get(currentKey, defaultValue);
-            if (eventKey.equals("All") || eventKey.equals(MapDefaultPreferences.isSTEMMING) || eventKey.equals(MapDefaultPreferences.STOPWORDSLIST)) {
+            if (eventKey.equals("All") || eventKey.equals(MapDefaultPreferences.isSTEMMING) || eventKey.equals(MapDefaultPreferences.STOPWORDSLIST) || eventKey.equals(MapDefaultPreferences.CHARSET) || eventKey.equals(MapDefaultPreferences.isKEEPTEXTS)) {
                 defaultValue = mapDefaultPreferences.get(currentKey);
                 if (!generateTrainingSet(trainingSetDirectory)) {
                     trainingSetDirectory = defaultValue;
@@ -212,6 +236,12 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
             currentKey = MapDefaultPreferences.isSTRATIFIED;
             isStratified = Boolean.parseBoolean(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
 
+            currentKey = MapDefaultPreferences.isSIMILARITYMATRIX;
+            isSimilarityMatrix = Boolean.parseBoolean(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
+
+            currentKey = MapDefaultPreferences.isLEAVEONEOUT;
+            isLeaveOneOut = Boolean.parseBoolean(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
+
             currentKey = MapDefaultPreferences.isLOGGING;
             isLogging = Boolean.parseBoolean(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
 
@@ -224,8 +254,8 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
             currentKey = MapDefaultPreferences.isVISUALIZECURRENTDOCUMENT;
             isVisualizeCurrentDocument = Boolean.parseBoolean(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
 
-            currentKey = MapDefaultPreferences.isVISUALIZELISTRANKEDDOCUMENTS;
-            isVisualizeDocumentsList = Boolean.parseBoolean(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
+            currentKey = MapDefaultPreferences.isVISUALIZECLASSIFICATIONS;
+            isVisualizeClassifications = Boolean.parseBoolean(preferences.get(currentKey, mapDefaultPreferences.get(currentKey)));
 
         } catch (Exception ex) {
             DocumentClassifierView.showErrorMessage(ex.toString());
@@ -239,11 +269,13 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
      * them inside a vector of strings (position 0: Title, position 1: Text).
      * 
      * @param  IS               The InputStream from where reading the document.
+     * @param  declaredCharset  The charset declared outside the document (for example by the header Content-Type of the
+     *                          HTTP response), or null if it is not known.
      * @return                  The title and the text of the extracted document, inside a String vector made of two elements.
      * @throws Exception 
      */
-    protected String[] readDocument(InputStream IS) throws Exception {
-        return Scraper.getDocument(IS);
+    protected String[] readDocument(InputStream IS, Charset declaredCharset) throws Exception {
+        return Scraper.getDocument(IS, declaredCharset, getAnalysisConfiguration().getDefaultCharset());
     }
 
     /**
@@ -578,6 +610,27 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
         return (defaultValue) ? mapDefaultPreferences.get(MapDefaultPreferences.STEMMER) : currentStemmer;
     }
 
+    /**
+     * Method that returns the name of the charset used to decode the documents that don't declare their charset.
+     * 
+     * @param defaultValue      Boolean parameter that indicates if what must be returned is the default value (true)
+     *                          or the actual one (false).
+     * @return                  The name of the charset used for the documents that don't declare it.
+     */
+    protected String getCharset(boolean defaultValue) {
+        return (defaultValue) ? mapDefaultPreferences.get(MapDefaultPreferences.CHARSET) : defaultCharset.name();
+    }
+
+    /**
+     * Method that returns the current settings used to read and pre-process the documents (scraper with its default
+     * charset, removal of stopwords and stemming), grouped inside a single object that doesn't depend on the preferences.
+     * 
+     * @return                  The current settings used to read and pre-process the documents.
+     */
+    protected AnalysisConfiguration getAnalysisConfiguration() {
+        return new AnalysisConfiguration(Scraper, isRemovalStopWords, stopWordsList, isStemming, currentStemmer, defaultCharset);
+    }
+
     /**
      * Method that returns a boolean value which indicates if the partitioning for K-Fold cross validation is stratified or not.
      * 
@@ -591,7 +644,32 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
     }
 
     /**
-     * Method that (Re)generates the training set from the specified input directory.
+     * Method that returns a boolean value which indicates if the K-Fold cross validation uses the similarity matrix of the
+     * training set or not.
+     * 
+     * @param defaultValue      Boolean parameter that indicates if what must be returned is the default value (true)
+     *                          or the actual one (false).
+     * @return                  A boolean value which indicates if the K-Fold cross validation uses the similarity matrix of
+     *                          the training set or not.
+     */
+    protected boolean isSimilarityMatrix(boolean defaultValue) {
+        return (defaultValue) ? Boolean.parseBoolean(mapDefaultPreferences.get(MapDefaultPreferences.isSIMILARITYMATRIX)) : isSimilarityMatrix;
+    }
+
+    /**
+     * Method that returns a boolean value which indicates if the validation is leave-one-out, instead of K-Fold.
+     * 
+     * @param defaultValue      Boolean parameter that indicates if what must be returned is the default value (true)
+     *                          or the actual one (false).
+     * @return                  A boolean value which indicates if the validation is leave-one-out (true) or K-Fold (false).
+     */
+    protected boolean isLeaveOneOut(boolean defaultValue) {
+        return (defaultValue) ? Boolean.parseBoolean(mapDefaultPreferences.get(MapDefaultPreferences.isLEAVEONEOUT)) : isLeaveOneOut;
+    }
+
+    /**
+     * Method that (Re)generates the training set from the specified input directory, using a {@link TrainingSetLoader}
+     * with the current preferences of the application.
      * The documents inside this directory must be organized inside one or more subdirectories, one for each category of the training set,
      * and having the name of this.
      * It is possible to have documents that belong to more than one category at the same time, by putting a copy of the same document in every
@@ -607,87 +685,33 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
         
         System.out.println("Check and generation of the training set...");
         
-        File dir = new File(path);
-        if (dir.isDirectory()) {
-            /**
-             * First of all, a new set made of subsets of documents is created, without overwriting the current training set.
-             * If at the end of the method there hasn't been any error, the value of the variable which contains the reference to
-             * the current training set will be changed with the reference to the new one.
-             */
-            Set<Set<Document>> copyTrainingSet = Collections.synchronizedSet(new LinkedHashSet<Set<Document>>());
-            trainingSetSize = 0;
-            for (File D : dir.listFiles()) {
-                if (D.isDirectory() && D.list().length > 0) {
-                    Set<Document> documentsCurrentCategory = new LinkedHashSet<Document>();
-                    for (File F : D.listFiles(new FileFilter() {
-
-                        public boolean accept(File arg) {
-                            if (arg.isDirectory()) {
-                                return false;
-                            } else {
-                                return true;
-                            }
-                        }
-                    })) {
-                        String[] titleText = readDocument(new FileInputStream(F));
-                        String titolo = titleText[0];
-                        String testo = titleText[1];
-                        String category = D.getName();
-                        /**
-                         * A new instance of the class {@link Document} is created, which represents the current document read
-                         * from the file system.
-                         */
-                        Document newDocument = new Document(titolo, testo, category, F.getCanonicalPath());
-                        boolean addNewDocument = true;
-                        /**
-                         * If the same document (that is, a document with the same text and title) is already inside the training set,
-                         * but in another category than the one corresponding to the current directory-->Instead of adding a duplicated
-                         * instance of it in another category, the name of the current category is added to the set of categories of the
-                         * document already present in the training set, and then a reference to its instance is added to the training set's
-                         * category currently being inspected, creating in this way a graph structure (as opposed to a tree one, where
-                         * every document can belong to one and only one category, which can be though as its father).
-                         * So, to summarize, for each document of the training set there is only one instance, but this can be put in more
-                         * than one category.
-                         */
-                        for (Set<Document> currentSubSet : copyTrainingSet) {
-                            for (Document currentDocument : currentSubSet) {
-                                if (currentDocument.equals(newDocument)) {
-                                    currentDocument.addCategory(category);
-                                    /**
-                                     * The variable 'nuovoDocumento' contains the reference to the document already present in the training set.
-                                     */
-                                    newDocument = currentDocument;
-                                    addNewDocument = false;
-                                    break;
-                                }
-                            }
-                        }
-                        /**
-                         * If I must add a new document to the training set-->I increment the variable that memorizes its total dimension.
-                         */
-                        if (addNewDocument) {
-                            trainingSetSize++;
-                        }
-                        /**
-                         * In any case, a reference to an instance of the class 'Document' (a new one, or an already existing one) is added
-                         * to the current category.
-                         */
-                        documentsCurrentCategory.add(newDocument);
-                    }
-                    copyTrainingSet.add(documentsCurrentCategory);
-                }
-            }
-            /**
-             * I make sure that the training set cannot be modified from this moment on.
-             */
-            copyTrainingSet = Collections.unmodifiableSet(copyTrainingSet);
+        /**
+         * First of all, a new set made of subsets of documents is created, without overwriting the current training set.
+         * If at the end of the method there hasn't been any error, the value of the variable which contains the reference to
+         * the current training set will be changed with the reference to the new one.
+         */
+        TrainingSetLoader loader = new TrainingSetLoader(getAnalysisConfiguration());
+        /**
+         * The texts of the training set are kept in memory only if requested through the preferences:
+         * Otherwise they are read again from the files, only when they must be shown.
+         */
+        loader.setRetainingText(isKeepTexts(false));
+        Set<Set<Document>> copyTrainingSet = loader.load(new File(path));
+        if (copyTrainingSet != null) {
+            trainingSetSize = loader.getNumberDocuments();
             /**
              * From this moment the variable 'trainingSet' points to the new training set just created.
              * The previous reference is then lost.
              */
             trainingSet = copyTrainingSet;
+            /**
+             * The training set is compiled only once into an inverted index, which is then used for every query.
+             */
+            trainingSetIndex = new TrainingSetIndex(trainingSet);
+            similarityMatrix = null;
 
-            System.out.println("Check and generation successfully completed");
+            System.out.println("Check and generation successfully completed (" + trainingSetSize + " documents, "
+                    + loader.getNumberDuplicates() + " duplicated files, " + loader.getNumberReadFiles() + " files scraped)");
 
             return true;
         } else {
@@ -709,6 +733,58 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
         return trainingSet;
     }
 
+    /**
+     * This method returns a reference to the inverted index of the current training set.
+     * It is declared as 'synchronized' for the same reasons of the previous method.
+     * 
+     * @return                  A reference to the inverted index of the current training set, or null if this hasn't yet been generated.
+     */
+    protected synchronized TrainingSetIndex getTrainingSetIndex() {
+        return trainingSetIndex;
+    }
+
+    /**
+     * This method returns the similarity matrix of the current training set, calculated with the current metric.
+     * The matrix is calculated (in parallel) only the first time it is requested after the training set has been
+     * (re)generated or the metric has been changed: The following validations reuse it, whatever their partitioning is.
+     * <p>
+     * The current training set and metric are read, and the new matrix is memorized, holding the lock of the application,
+     * but the matrix is calculated without holding it: In this way the other synchronized methods (for example the ones
+     * used to classify a document in the meantime) don't have to wait for the whole calculation.
+     * 
+     * @return                  The similarity matrix of the current training set, or null if this hasn't yet been generated.
+     * @throws InterruptedException     If the current thread is interrupted while the matrix is being calculated.
+     * @throws ExecutionException       If the calculation of the matrix fails.
+     */
+    protected SimilarityMatrix getSimilarityMatrix() throws InterruptedException, ExecutionException {
+        TrainingSetIndex currentTrainingSetIndex;
+        String currentMetric;
+        synchronized (this) {
+            if (trainingSetIndex == null) {
+                return null;
+            }
+            if (similarityMatrix != null && similarityMatrix.getMetric().equals(metric)) {
+                return similarityMatrix;
+            }
+            /**
+             * The previous matrix is released before calculating the new one, so that they are not in memory together.
+             */
+            similarityMatrix = null;
+            currentTrainingSetIndex = trainingSetIndex;
+            currentMetric = metric;
+        }
+        SimilarityMatrix newSimilarityMatrix = new SimilarityMatrix(currentTrainingSetIndex, currentMetric, Runtime.getRuntime().availableProcessors());
+        synchronized (this) {
+            /**
+             * The matrix is memorized only if the training set hasn't been regenerated during its calculation.
+             */
+            if (trainingSetIndex == currentTrainingSetIndex) {
+                similarityMatrix = newSimilarityMatrix;
+            }
+        }
+        return newSimilarityMatrix;
+    }
+
     /**
      * This method returns the total dimension of the current training set, that is the number of different documents
      * thereby present.
@@ -733,15 +809,26 @@ public class DocumentClassifierApp extends SingleFrameApplication implements Pre
     }
 
     /**
-     * This method returns a boolean value that indicates if the list of documents of the training set, ranked to the current
-     * query document, must be visualized during the validation phase (keep in mind that this slows down its execution).
+     * This method returns a boolean value that indicates if the outcome of the classification of each document must be
+     * visualized during the validation phase (keep in mind that this slows down its execution).
+     * 
+     * @param defaultValue      Boolean parameter that indicates if what must be returned is the default value (true)
+     *                          or the actual one (false).
+     * @return                  A boolean value that indicates if the outcome of each document must be visualized during the validation phase.
+     */
+    protected boolean isVisualizeClassifications(boolean defaultValue) {
+        return (defaultValue) ? Boolean.parseBoolean(mapDefaultPreferences.get(MapDefaultPreferences.isVISUALIZECLASSIFICATIONS)) : isVisualizeClassifications;
+    }
+
+    /**
+     * This method returns a boolean value that indicates if the texts of the documents of the training set must be kept
+     * in memory (keep in mind that this increases the memory used by the training set).
      * 
      * @param defaultValue      Boolean parameter that indicates if what must be returned is the default value (true)
      *                          or the actual one (false).
-     * @return                  A boolean value that indicates if the list of documents of the training set, ranked to the current
-     *                          query document, must be visualized during the validation phase.
+     * @return                  A boolean value that indicates if the texts of the documents of the training set must be kept in memory.
      */
-    protected boolean isVisualizeListRankedDocuments(boolean defaultValue) {
-        return (defaultValue) ? Boolean.parseBoolean(mapDefaultPreferences.get(MapDefaultPreferences.isVISUALIZELISTRANKEDDOCUMENTS)) : isVisualizeDocumentsList;
+    protected boolean isKeepTexts(boolean defaultValue) {
+        return (defaultValue) ? Boolean.parseBoolean(mapDefaultPreferences.get(MapDefaultPreferences.isKEEPTEXTS)) : isKeepTexts;
     }
 }
\ No newline at end of file
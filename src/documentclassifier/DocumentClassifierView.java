@@ -1,7 +1,11 @@
 package documentclassifier;
 
 import documentclassifier.Metriche.TFIDFComparator;
+import documentclassifier.Metriche.TopKSelector;
 import documentclassifier.Metriche.BhattacharryaDistanceComparator;
+import documentclassifier.Metriche.SparseVector;
+import documentclassifier.Scrapers.DocumentCharset;
+import java.awt.GraphicsEnvironment;
 import java.awt.event.KeyEvent;
 import documentclassifier.DocumentClassifierApp;
 import java.util.concurrent.ExecutionException;
@@ -39,15 +43,9 @@ import java.net.URLConnection;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Calendar;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.ResourceBundle;
 import java.util.Vector;
-import java.util.logging.FileHandler;
-import java.util.logging.Handler;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
 import java.util.prefs.PreferenceChangeListener;
 import javax.net.ssl.HttpsURLConnection;
 import javax.swing.Icon;
@@ -55,6 +53,7 @@ import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JTable;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.text.DefaultCaret;
 import org.jdesktop.application.Application;
@@ -632,10 +631,16 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
     /**
      * This method shows an error message inside a JOptionPane, in order to make visualization of
      * exceptions' messages more user-friendly.
+     * If the program is executed without a graphical environment (for example by the {@link BatchClassifier}),
+     * the message is instead printed on the standard error.
      * 
      * @param  msg              Message that must be showed.
      */
     public static void showErrorMessage(String msg) {
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println(msg);
+            return;
+        }
         JOptionPane.showMessageDialog(null, msg, ResourceBundle.getBundle("documentclassifier/resources/DocumentClassifierView").getString("messages.Error"), JOptionPane.ERROR_MESSAGE);
     }
     
@@ -821,14 +826,14 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
                 String[] titleText;
                 if (address.toLowerCase().startsWith("http://")) {
                     connection = (HttpURLConnection) new URL(address).openConnection();
-                    titleText = application.readDocument(connection.getInputStream());
+                    titleText = application.readDocument(connection.getInputStream(), DocumentCharset.fromContentType(connection.getContentType()));
                 } else if (address.toLowerCase().startsWith("https://")) {
                     connection=(HttpsURLConnection) new URL(address).openConnection();
-                    titleText = application.readDocument(connection.getInputStream());
+                    titleText = application.readDocument(connection.getInputStream(), DocumentCharset.fromContentType(connection.getContentType()));
                 } else if (address.toLowerCase().startsWith("file://")) {
-                    titleText = application.readDocument(new FileInputStream(address.substring(7)));
+                    titleText = application.readDocument(new FileInputStream(address.substring(7)), null);
                 } else {
-                    titleText = application.readDocument(new FileInputStream(address));
+                    titleText = application.readDocument(new FileInputStream(address), null);
                 }
                 setMessage(documentClassifierViewResources.getString("messages.Document")+" "+documentClassifierViewResources.getString("messages.Read").toLowerCase());
                 /**
@@ -903,7 +908,7 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
      */
     @Action(block = Task.BlockingScope.COMPONENT, enabledProperty="documentRead")
     public Task rankDocuments() {
-        currentTask = new RankDocumentsTask(getApplication(), currentQuery, application.getTrainingSet(), application.getKNN(false), true);
+        currentTask = new RankDocumentsTask(getApplication(), currentQuery, application.getTrainingSetIndex(), application.getKNN(false), true, application.getKNN(false));
         return currentTask;
     }
     
@@ -914,9 +919,9 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
          */
         private Document query;
         /**
-         * The current training set.
+         * The current training set, compiled into an inverted index.
          */
-        private Set<Set<Document>> trainingSet;
+        private TrainingSetIndex trainingSet;
         /**
          * The value of K for the K-NN to use during classification.
          */
@@ -926,17 +931,24 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
          * must be visualized or not.
          */
         private boolean visualizeListDocuments;
+        /**
+         * The number of documents nearest to the query that must be ranked, when the list is not visualized.
+         */
+        private int numberRankedDocuments;
         
         /**
          * Constructor of the task.
          * 
          * @param app                       The instance of the class {@link org.jdesktop.application.Application Application} where this task is executed.
          * @param query                     The instance of the class {@link Document}, representing the current query to classify.
-         * @param trainingSet               The current training set.
+         * @param trainingSet               The current training set, compiled into an inverted index.
          * @param KNN                       The value of K for K-NN, to use during classification.
          * @param visualizzaListaDocumenti  A boolean value that indicates if the list of documents of the training set, ranked to the query, must be visualized or not.
+         *                                  If it is visualized, all documents of the training set are ranked.
+         * @param numberRankedDocuments     The number of documents nearest to the query to rank, if the list is not visualized.
+         *                                  It must be at least equal to the value of K of every K-NN that will read the result.
          */
-        RankDocumentsTask(org.jdesktop.application.Application app, Document query, Set<Set<Document>> trainingSet, int KNN, boolean visualizzaListaDocumenti) {
+        RankDocumentsTask(org.jdesktop.application.Application app, Document query, TrainingSetIndex trainingSet, int KNN, boolean visualizzaListaDocumenti, int numberRankedDocuments) {
             // Runs on the EDT.  Copy GUI state that
             // doInBackground() depends on from parameters
             // to DeterminaCategoriaTask fields, here.
@@ -945,6 +957,7 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
             this.trainingSet = trainingSet;
             this.KNN=KNN;
             this.visualizeListDocuments=visualizzaListaDocumenti;
+            this.numberRankedDocuments=numberRankedDocuments;
         }
 
         @Override
@@ -959,14 +972,14 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
                  */
                 setTaskRunning(true);
                 /**
-                 * A list of elements of type 'Entry<Map<String,Object>, Map<String, Double>>' is created, where each one has
+                 * A list of elements of type 'Entry<Map<String,Object>, SparseVector>' is created, where each one has
                  * as its key a map {@link String}->{@link Object}, containing information on a document of the training set,
-                 * and as its value a map {@link String}->{@link Double}, containing the document's histogram.
+                 * and as its value a {@link SparseVector}, containing the document's histogram.
                  * It is necessary to use a list in order to be able to order it, basing on the distance of each document
                  * from the current query (the distance is stored in the map that represents the key of each entry, at the voice
                  * "Distance").
                  */
-                LinkedList<Entry<Map<String,Object>, Map<String, Double>>> listDocuments=new LinkedList<Entry<Map<String, Object>, Map<String, Double>>>();
+                LinkedList<Entry<Map<String,Object>, SparseVector>> listDocuments=new LinkedList<Entry<Map<String, Object>, SparseVector>>();
                 infoDocuments=new LinkedList<Map<String, Object>>();
                 /**
                  * La list of ranked training set's document is cleared.
@@ -980,67 +993,59 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
                 setMessage(documentClassifierViewResources.getString("messages.readingTrainingSet")+"...");
                 
                 /**
-                 * This map represents a single entry, in the list of information about all documents of the
-                 * training set, and it's the key of each entry in the list 'listaDocuments'.
-                 * The 1st instance created contains information on the query document.
+                 * The distances (or cosines) of all documents of the training set from the query are calculated at once,
+                 * visiting only the postings of the query's terms inside the inverted index.
                  */
-                Map<String, Object> infoDocument=new LinkedHashMap<String, Object>();
-                infoDocument.put("Distance", new Double(1.0));
-                infoDocument.put("Categories", "Query");
-                infoDocument.put("Title", labelTitle.getText());
-                infoDocument.put("Path", fieldURL.getText());
+                double[] distances;
+                if (metric.equals("Bhattacharrya")) {
+                    setMessage(documentClassifierViewResources.getString("messages.bhattacharryaCalculation")+"...");
+                    distances = BhattacharryaDistanceComparator.calculateDistance(trainingSet.getIndex(), query.getHistogram());
+                } else {
+                    setMessage(documentClassifierViewResources.getString("messages.cosineCalculation")+"...");
+                    distances = TFIDFComparator.calculateCosine(trainingSet.getIndex(), query.getHistogram());
+                }
 
                 /**
-                 * This map represents the histogram of each document of the training set, and it's the value
-                 * of each entry in the list 'listDocuments'.
-                 */
-                Map<String, Double> histogram = new HashMap<String, Double>();
-                /**
-                 * This variable represents a single entry in the list 'listDocuments'.
-                 */
-                Entry<Map<String,Object>, Map<String, Double>> entryDocument;
-                /**
-                 * For each document of the training set, a new entry is added to the list, which contains:
-                 * - Key: Information on the document.
-                 * - Value: The histogram of the document.
+                 * This map represents a single entry, in the list of information about all documents of the
+                 * training set, and it's the key of each entry in the list 'listaDocuments'.
                  */
-                for(Set<Document> subSetTrainingSet : trainingSet ) {
-                    for (Document currentDocument : subSetTrainingSet) {
-                        infoDocument=new LinkedHashMap<String, Object>();
-                        setMessage(documentClassifierViewResources.getString("messages.readingDocument")+" '" + currentDocument.getTitle() + "'...");
-                        histogram=new HashMap<String, Double>(currentDocument.getHistogram());
-                        infoDocument.put("Categories", currentDocument.getCategories());
-                        infoDocument.put("Title", currentDocument.getTitle());
-                        infoDocument.put("Path", currentDocument.getPath());
-                        entryDocument=new AbstractMap.SimpleEntry<Map<String, Object>,Map<String,Double>>(infoDocument, histogram);
-                        if(!listDocuments.contains(entryDocument)) {
-                            listDocuments.add(entryDocument);
-                        }
-                    }
-                }
-
-                if (metric.equals("Bhattacharrya")) {
+                Map<String, Object> infoDocument;
+                Document currentDocument;
+                if (visualizeListDocuments) {
                     /**
-                     * If the current metric is the Bhattacharrya distance-->It is necessary to calculate its value, between the 1st histogram
-                     * (the one of the query document) and all others, and order this ones according to the values calculated.
+                     * The whole training set must be visualized-->For each document of the training set, a new entry
+                     * is added to the list, which contains:
+                     * - Key: Information on the document.
+                     * - Value: The histogram of the document.
                      */
-                    setMessage(documentClassifierViewResources.getString("messages.bhattacharryaCalculation")+"...");
-                    BhattacharryaDistanceComparator.calculateDistance(listDocuments, query.getHistogram());
+                    for (int i = 0; i < trainingSet.size(); i++) {
+                        currentDocument = trainingSet.getDocuments().get(i);
+                        infoDocument = KNNClassifier.createInfoDocument(currentDocument, distances[i], metric);
+                        listDocuments.add(new AbstractMap.SimpleEntry<Map<String, Object>,SparseVector>(infoDocument, currentDocument.getHistogram()));
+                    }
+
                     setMessage("Ranking...");
-                    Collections.sort((List<Entry<Map<String,Object>, Map<String, Double>>>) listDocuments, new BhattacharryaDistanceComparator());
+                    if (metric.equals("Bhattacharrya")) {
+                        Collections.sort((List<Entry<Map<String,Object>, SparseVector>>) listDocuments, new BhattacharryaDistanceComparator());
+                    } else {
+                        Collections.sort((List<Entry<Map<String,Object>, SparseVector>>) listDocuments, new TFIDFComparator());
+                    }
+
+                    for(Entry<Map<String, Object>,SparseVector> currentEntry : listDocuments) {
+                        infoDocuments.add(currentEntry.getKey());
+                    }
                 } else {
-                    /** 
-                     * Otherwise, if the current metric is the TF-IDF-->It is necessary to calculate the cosine of the angle between
-                     * the TF-IDF vector of each training set's document, and the vector of the query document.
+                    /**
+                     * The list is not visualized-->The K-NN will read only its first documents, so only the
+                     * 'numberRankedDocuments' nearest to the query are selected (in the same order the complete
+                     * sort would give them), without ordering the whole training set.
                      */
-                    setMessage(documentClassifierViewResources.getString("messages.cosineCalculation")+"...");
-                    TFIDFComparator.calculateCosine(listDocuments, query.getHistogram());
                     setMessage("Ranking...");
-                    Collections.sort((List<Entry<Map<String,Object>, Map<String, Double>>>) listDocuments, new TFIDFComparator());
-                }
-                
-                for(Entry<Map<String, Object>,Map<String,Double>> currentDocument : listDocuments) {
-                    infoDocuments.add(currentDocument.getKey());
+                    int[] nearestDocuments = TopKSelector.selectTopK(distances, numberRankedDocuments, metric.equals("Bhattacharrya"));
+                    for (int document : nearestDocuments) {
+                        currentDocument = trainingSet.getDocuments().get(document);
+                        infoDocuments.add(KNNClassifier.createInfoDocument(currentDocument, distances[document], metric));
+                    }
                 }
                 listDocuments=null;
                 
@@ -1086,7 +1091,7 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
         protected void succeeded(LinkedList<Map<String,Object>> result) {
             // Runs on the EDT.  Update the GUI based on
             // the result computed by doInBackground().
-            String category=determineCategory(result,KNN);
+            String category=KNNClassifier.determineCategory(result,KNN);
             setMessage(documentClassifierViewResources.getString("messages.estimatedCategory")+": '"+category + "'");
         }
         
@@ -1116,77 +1121,8 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
     }
     
     /**
-     * It determines the category of the query document, using the K-NN algorithm.
-     * 
-     * @param   infoDocuments   A list with information about the training set's documents, ordered according to the distance
-     *                          of each one to the query document.
-     * @param   K               The value of K for the K-NN-->The first K documents in the list will be taken into exam, to determine
-     *                          the most frequent category, that will be assigned to the query document.
-     * @return                  The name of the category determined with the K-NN algorithm.
-     */
-    private String determineCategory(LinkedList<Map<String, Object>> infoDocuments, int K) {
-
-        /**
-         * The following data structure is used by the method: An hash table, indexed on the names of the training set's categories,
-         * and having as values pair of integers that represent, in order:
-         * 1 - The minimum distance, from the query document, of one of the documents belonging to the category stored on the key,
-         *     that appear among the first k of the list.
-         * 2 - The frequency of the category stored on the key.
-         * This data structure is used to determine the most frequent category among the ones of the first K documents, and to solve
-         * this particular case: If two or more categories have the same frequency, the algorithm chooses the one that appears before
-         * in the list, that is the one that has the 1st document less distant from the query.
-         */
-        Map<String, Entry<Integer, Integer>> categoriesFrequencies = new HashMap<String, Entry<Integer, Integer>>();
-        Set<String> categoriesCurrentDocument;
-        int maxFrequency, currentFrequency;
-        Entry<Integer, Integer> currentEntry;
-        Entry<String, Entry<Integer, Integer>> maxEntry = null;
-        int numberExaminedCategories=0;
-        boolean exit=false;
-        for (int i = 0; i < K; i++) {
-            categoriesCurrentDocument=(Set<String>) infoDocuments.get(i).get("Categories");
-            for(String currentCategory : categoriesCurrentDocument) {
-                numberExaminedCategories++;
-                currentEntry = (SimpleEntry<Integer, Integer>) categoriesFrequencies.get(currentCategory);
-                if (currentEntry == null) {
-                    currentEntry = new AbstractMap.SimpleEntry<Integer,Integer>(i, 0);
-                }
-                currentEntry.setValue(currentEntry.getValue() + 1);
-                //The frequency of the current category is incremented by 1
-                categoriesFrequencies.put(currentCategory, currentEntry);
-                
-                if (i == 0) {
-                    /**
-                     * On the 1st iteration, the variable 'maxEntry' is initialized with:
-                     *  - Key: The name of the category present in the 1st row of the input list.
-                     *  - Value: Pair <0,1>.
-                     */
-                    maxEntry = new AbstractMap.SimpleEntry<String,Entry<Integer,Integer>>(currentCategory, currentEntry);
-                }
-                maxFrequency = maxEntry.getValue().getValue();
-                currentFrequency = currentEntry.getValue();
-                if (currentFrequency > maxFrequency ||
-                        (currentFrequency == maxFrequency && currentEntry.getKey() < maxEntry.getValue().getKey())) {
-                    maxEntry = new AbstractMap.SimpleEntry<String,Entry<Integer,Integer>>(currentCategory, currentEntry);
-                }
-            }
-            if(exit) {
-                break;
-            }
-            /**
-             * If the next document has so much categories (more than 1) to reach or surpass the limit of K examined
-             * categories-->The next iteration of the cycle will be the last.
-             */
-            if(i<=infoDocuments.size()-2 && numberExaminedCategories+((Set<String>)infoDocuments.get(i+1).get("Categories")).size()>=K) {
-                exit=true;
-            }
-        }
-        return maxEntry.getKey();
-    }
-    
-    /**
-     * Action, and associated background task, to perform K-Fold cross validation on all pages of the training set,
-     * in order to determine the optimal value of K for the K-NN.
+     * Action, and associated background task, to perform K-Fold (or leave-one-out) cross validation on all pages of the
+     * training set, in order to determine the optimal value of K for the K-NN.
      * The task blocks the current window, and automatically shows a JOptionPane which, together with the appropriate
      * text area at the bottom of the main window, informs the user on the state of the computation.
      *  
@@ -1197,38 +1133,58 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
         return new ValidationTask(getApplication(),application.getMaximumKNNValidation(false));
     }
     
-    private class ValidationTask extends org.jdesktop.application.Task<Entry<Integer,Double>, Void> {
+    private class ValidationTask extends org.jdesktop.application.Task<Entry<Integer,Double>, Void> implements ValidationListener {
         
-        int KNNMinimum,KNNMaximum;
-        boolean isStratified,isLogging;
+        int KNNMinimum,KNNMaximum,KFold;
+        boolean isStratified,isLeaveOneOut,isLogging,isVisualizeCurrentDocument,isVisualizeClassifications;
         long startTime,stopTime;
-        FileHandler FH;
-        Logger infoLogger;
+        /**
+         * The structured log of the validation, written in background, or null if logging is disabled.
+         */
+        ValidationLog validationLog;
+        /**
+         * The description of the partitioning, shown in the status messages.
+         */
+        String isStratificato;
         
         ValidationTask(org.jdesktop.application.Application app,int KNNMaximum) {
             // Runs on the EDT.  Copy GUI state that
             // doInBackground() depends on from parameters
             // to trainTask fields, here.
             super(app);
+            /**
+             * The graphical interface is prepared here, on the EDT: During the validation it is updated only by
+             * the events received from the {@link ValidationService}.
+             */
+            fieldURL.setText("");
+            labelTitle.setText("");
+            labelText.setText("");
+            textAreaOutput.setText("");
+            setDocumentRead(false);
+            setTaskRunning(true);
             try {
                 this.KNNMinimum = application.getKNNMinimum();
                 this.KNNMaximum = KNNMaximum;
                 this.isStratified = application.isStratified(false);
+                this.isLeaveOneOut = application.isLeaveOneOut(false);
+                this.isVisualizeCurrentDocument = application.isVisualizeCurrentDocument(false);
+                this.isVisualizeClassifications = application.isVisualizeClassifications(false);
+                if(isLeaveOneOut) {
+                    isStratificato=documentClassifierViewResources.getString("messages.LeaveOneOut");
+                } else {
+                    isStratificato=(isStratified) ? "" : documentClassifierViewResources.getString("messages.Not")+" ";
+                    isStratificato+=documentClassifierViewResources.getString("messages.Stratified");
+                }
+                isStratificato=isStratificato.toLowerCase();
                 this.isLogging=application.isLogging(false);
                 if(isLogging) {
                     /**
                      * If logging is enabled, it is necessary to open the log file (with the name
-                     * and mode specified through the preferences panel), and create and object
-                     * of type {@link Logger}, to register 'INFO' messages.
+                     * and mode specified through the preferences panel): The events of the validation
+                     * are written in it by a background thread, in a structured format (see {@link ValidationLog}).
                      */
-                    FH = new FileHandler(application.getLogFile(false), !application.isOverwriteLogFile(false));
-                    FH.setLevel(Level.INFO);
-                    FH.setFormatter(new SimpleFormatter());
-                    infoLogger = Logger.getLogger(DocumentClassifierView.class.getName());
-                    for (Handler currentHandler : infoLogger.getHandlers()) {
-                        infoLogger.removeHandler(currentHandler);
-                    }
-                    infoLogger.addHandler(FH);
+                    String partitioning = (isLeaveOneOut) ? "leave-one-out" : ((isStratified) ? "stratified" : "random");
+                    validationLog = new ValidationLog(application.getLogFile(false), !application.isOverwriteLogFile(false), application.getMetric(false), partitioning);
                 }
             } catch (Exception ex) {
                 showErrorMessage(ex.getMessage());
@@ -1243,190 +1199,112 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
             // the Swing GUI from here.
             
             /**
-             * K-fold cross validation: Repeat inside a cycle these operations:
-             * 1 - Partition (with random or stratified sampling) the training set in 'K-Fold' subsets
-             * 2 - For the 1st value of K-NN (1):
-             *  2.1 - For each subset of the partitioned training set (at point 1):
-             *      2.1.1 - Temporarly delete it from the training set, and use it as the control set.
-             *      2.1.2 - For each document of the control set (we already know its category), use it as the current query document.
-             *          2.1.2.1 - Execute the task 'rankDocuments'.
-             *                    At the end of it, save the list with information on documents of the training set (ordered according to
-             *                    the distance with the current query), for future use, in a map, which associates to each query document
-             *                    its own list of ranked training set's documents.
-             *          2.1.2.2 - Compare the category returned by the task with the effective one of the document, and in case of mismatch
-             *                    increment the counter of the classification error.
-             *  2.2 - Calculate the average classification error for the current value of K-NN, and store it in a map.
-             * 3 - For the next values of K-NN, from 2 to the maximum allowed one, it is not necessary to execute the point 2.1.2.1,
-             *     since it's possible to use the list calculated and saved at point 2.1.2.1, and apply the K-NN to it.
-             * 4 - Choose the value of K corresponding to the minimum average error.
+             * The validation is done by a {@link ValidationService}, which doesn't depend on the graphical interface:
+             * This task only receives its events (see the methods of {@link ValidationListener}), and passes them to
+             * the EDT.
              */
             startTime=Calendar.getInstance().getTimeInMillis();
-            fieldURL.setText("");
-            labelTitle.setText("");
-            labelText.setText("");
-            textAreaOutput.setText("");
-            setDocumentRead(false);
-            int KFold=application.getKFold(false);
-            
-            /**
-             * The data structure 'minimumError' represents a single entry of a map, which at the end of the validation phase contains
-             * the following:
-             * - Key: The value of K (for the K-NN) corresponding to the minimum average classification error (average of the classification
-             * error for each fold).
-             * - Value: The value of such error.
-             */
-            Entry<Integer,Double> minimumError = new AbstractMap.SimpleEntry<Integer,Double>(0, Double.MAX_VALUE);
-            /**
-             * This map contains all associations 'Value of K'->'Corresponding classification error'.
-             */
-            Map<Integer, Double> averageErrors = new HashMap<Integer, Double>();
-            /**
-             * A copy of the training set is created. This is necessary, because if the sampling is stratified, each fold will be
-             * created iterating on each category of the training set, and removing from it documents added to the current partition/fold.
-             * Therefore, since the training set must not be modified, a new temporary copy of it is created, used in place of the original.
-             */
-            Set<Set<Document>> copyTrainingSet=new HashSet<Set<Document>>();
-            for (Set<Document> currentSubSet : application.getTrainingSet() ) {
-                Set<Document> copyCurrentSubSet=new HashSet<Document>();
-                copyCurrentSubSet.addAll(currentSubSet);
-                copyTrainingSet.add(copyCurrentSubSet);
+            ValidationService validationService = new ValidationService(application.getMetric(false), Runtime.getRuntime().availableProcessors());
+            validationService.addValidationListener(this);
+            if(validationLog != null) {
+                validationService.addValidationListener(validationLog);
             }
-            
-            Iterator randomIteratorTrainingSet=null;
-            int numberCategories=copyTrainingSet.size();
-            //Dimension of every fold
-            int foldDimension=application.getTrainingSetSize()/KFold;
-            int numberDocumentsForCategory=0;
-            if(isStratified) {
-                foldDimension = (foldDimension/numberCategories) * numberCategories;
-                numberDocumentsForCategory=foldDimension/numberCategories;
-            } else {
-                Set<Document> normalizedTrainingSet=new HashSet<Document>();
-                for(Set<Document> currentSubSet: copyTrainingSet) {
-                    normalizedTrainingSet.addAll(currentSubSet);
-                }
-                randomIteratorTrainingSet=normalizedTrainingSet.iterator();
+            if(isLeaveOneOut) {
+                return validationService.validateLeaveOneOut(application.getTrainingSetIndex(), KNNMinimum, KNNMaximum);
             }
-            
             /**
-             * A partitioning of the training set's copy is prepared (with random or stratified sampling),
-             * in K-Fold subsets, all of the same dimension.
+             * If enabled, the nearest documents are selected from the similarity matrix of the whole training set, calculated
+             * only by the first validation: The following ones, with any partitioning, don't rank the documents again.
              */
-            Set<Set<Document>> partitionedTrainingSet=new HashSet<Set<Document>>();
-            Set<Document> trainingSetSubSet;
-            Iterator iteratorTrainingSetCategory;                               //Iterator on the training set's categories
-            for(int j=0;j<KFold;j++) {                                          //1
-                trainingSetSubSet=new LinkedHashSet<Document>();
-                if(isStratified) {
-                    for(Set<Document> currentCategory: copyTrainingSet) {
-                        iteratorTrainingSetCategory=currentCategory.iterator();
-                        for(int z=0;z<numberDocumentsForCategory;z++) {
-                            trainingSetSubSet.add((Document) iteratorTrainingSetCategory.next());
-                            iteratorTrainingSetCategory.remove();
-                        }
+            if(application.isSimilarityMatrix(false)) {
+                validationService.setSimilarityMatrix(application.getSimilarityMatrix());
+            }
+            return validationService.validate(application.getTrainingSet(), application.getTrainingSetSize(), application.getKFold(false),
+                    isStratified, KNNMinimum, KNNMaximum);
+        }
+        
+        /**
+         * This method appends a message to the text area of the output, from the EDT.
+         * If the current document must be visualized, also its URL, title and text are shown.
+         * 
+         * @param message       The message (one or more lines), or null if only the current document must be visualized.
+         * @param currentQuery  The current query document, or null if it must not be visualized.
+         */
+        private void output(final String message, Document currentQuery) {
+            final String[] infoQuery = (currentQuery != null) ? new String[]{currentQuery.getPath(), currentQuery.getTitle(), currentQuery.getText()} : null;
+            SwingUtilities.invokeLater(new Runnable() {
+
+                public void run() {
+                    if(infoQuery != null) {
+                        fieldURL.setText(infoQuery[0]);
+                        labelTitle.setText(infoQuery[1]);
+                        labelText.setText(infoQuery[2]);
                     }
-                } else {
-                    for(int z=0;z<foldDimension;z++) {
-                        trainingSetSubSet.add((Document) randomIteratorTrainingSet.next());
+                    if(message != null) {
+                        textAreaOutput.append(message+"\n");
                     }
                 }
-                partitionedTrainingSet.add(trainingSetSubSet);
+            });
+        }
+        
+        public void rankingStarted(int KFold, int KNNMinimum, int KNNMaximum) {
+            /**
+             * Each document of the control sets is ranked only once (in parallel with the others), selecting its KNNMaximum
+             * nearest documents: From this list the categories estimated by the K-NN for all the values of K are determined
+             * at once, so the following events only have to read them.
+             */
+            this.KFold=KFold;
+            this.KNNMaximum=KNNMaximum;
+            String currentMessage="K-NN: "+KNNMinimum+"-"+KNNMaximum+" - K-Fold: "+KFold+" ["+documentClassifierViewResources.getString("messages.Partitioning")+" "+isStratificato+"] \n";
+            currentMessage += "("+documentClassifierViewResources.getString("messages.rankingOrderingDocuments")+"...)";
+            setMessage(currentMessage);
+            output(currentMessage, null);
+        }
+        
+        public void classificationStarted(int K) {
+            String currentMessage="K-NN: "+K+"/"+KNNMaximum+" - K-Fold: "+KFold+" ["+documentClassifierViewResources.getString("messages.Partitioning")+" "+isStratificato+"] \n";
+            setMessage(currentMessage);
+            output(currentMessage, null);
+        }
+        
+        public void documentsClassified(int K, List<ValidationService.Classification> classifications) {
+            /**
+             * The outcome of each document is shown only if requested through the preferences: A validation classifies each
+             * document of the training set once for every value of K, and appending all these lines to the text area would slow
+             * down the EDT. By default only the classification error for each value of K is shown (the outcome of each document
+             * can be written in the log file).
+             */
+            if(!isVisualizeClassifications && !isVisualizeCurrentDocument) {
+                return;
             }
-            
-            final int totalNumberIterations=(KNNMaximum-(KNNMinimum+1)+1)*foldDimension*KFold;
-            int indexCurrentIteration=0;
-            int indexCurrentDocument;
-            int indexCurrentFold;
-            int errorCounter;
-            String calculatedCategory;
-            Set<String> effectiveCategories;
-            Set<Set<Document>> currentTrainingSet;
-            String isStratificato=(application.isStratified(false)) ? "" : documentClassifierViewResources.getString("messages.Not")+" ";
-            isStratificato+=documentClassifierViewResources.getString("messages.Stratified");
-            isStratificato=isStratificato.toLowerCase();
-            boolean orderDocuments;
             /**
-             * The following map, named 'infoOrderedDocuments', is used to save the results of the ranking of training set's documents,
-             * performed during the 1st iteration of the validation phase.
-             * In this way the program will be able to reuse them in the next phase.
+             * The messages of the whole group are appended at once, and only the last document of the group is visualized.
              */
-            Map<Document,LinkedList<Map<String, Object>>> infoRankedDocuments=new HashMap<Document, LinkedList<Map<String, Object>>>();
-            for (int i = KNNMinimum; i <= KNNMaximum; i++) {
-                /**
-                 * The boolean variable 'rankDocuments' indicates if the current iteration is the 1st or not, and therefore if it is
-                 * necessary to perform ranking of training set's documents, or if it's possible to reuse the result saved during the
-                 * 1st iteration, and avoid in this way unnecessary computations.
-                 */
-                orderDocuments=(i==KNNMinimum);
-                String currentMessage="K-NN: "+i+"/"+KNNMaximum+" - K-Fold: "+KFold+" ["+documentClassifierViewResources.getString("messages.Partitioning")+" "+isStratificato+"] \n";
-                if(orderDocuments) {
-                    currentMessage += "("+documentClassifierViewResources.getString("messages.rankingOrderingDocuments")+"...)";
-                }
-                setMessage(currentMessage);
-                textAreaOutput.append(currentMessage+"\n");
-                if(isLogging) {         //If logging is enabled
-                    infoLogger.info(currentMessage);
-                }
-                
-                indexCurrentFold=0;
-                errorCounter=0;
-                for ( Set<Document> currentControlSet : partitionedTrainingSet ) {   //2.1
-                    
-                    indexCurrentFold++;
-                    currentTrainingSet=new HashSet<Set<Document>>(partitionedTrainingSet);
-                    currentTrainingSet.remove(currentControlSet);               //2.1.1
-                    indexCurrentDocument=0;
-                    for(Document currentQuery: currentControlSet) {             //2.1.2
-                        indexCurrentDocument++;
-                        if(!orderDocuments) {
-                            indexCurrentIteration++;
-                            setProgress(indexCurrentIteration,1,totalNumberIterations);
-                        }
-                        
-                        if(application.isVisualizeCurrentDocument(false)) {
-                            /**
-                             * If visualization of current query document's information is enabled,
-                             * its URL, title and text are shown in the GUI.
-                             */
-                            fieldURL.setText(currentQuery.getPath());
-                            labelTitle.setText(currentQuery.getTitle());
-                            labelText.setText(currentQuery.getText());
-                        }
-                        
-                        if(orderDocuments) {                                    //2.1.2.1
-                            currentTask = new RankDocumentsTask(getApplication(), currentQuery, currentTrainingSet, i, application.isVisualizeListRankedDocuments(false));
-                            currentTask.execute();
-                            infoRankedDocuments.put(currentQuery,((RankDocumentsTask)currentTask).get());
-                            currentTask=null;
-                        }
-                        calculatedCategory = determineCategory(infoRankedDocuments.get(currentQuery), i);
-                        effectiveCategories = currentQuery.getCategories();
-                        if (!effectiveCategories.contains(calculatedCategory)) {//2.1.2.2
-                            errorCounter++;
-                        }
-                        currentMessage=documentClassifierViewResources.getString("messages.Document")+" n° "+indexCurrentDocument+"/"+foldDimension+" (fold n° "+indexCurrentFold+"): "+documentClassifierViewResources.getString("messages.estimatedCategory")+": '"+calculatedCategory+"', "+documentClassifierViewResources.getString("messages.effectiveCategories")+": '"+effectiveCategories+"' - "+documentClassifierViewResources.getString("messages.currentNumberErrors")+": "+errorCounter;
-                        textAreaOutput.append(currentMessage+"\n");
-                        if(isLogging) {
-                            infoLogger.info(currentMessage);
-                        }
-                        effectiveCategories=null;
+            String currentMessages = null;
+            if(isVisualizeClassifications) {
+                StringBuilder currentMessagesBuilder = new StringBuilder();
+                for (ValidationService.Classification currentClassification : classifications) {
+                    if(currentMessagesBuilder.length() > 0) {
+                        currentMessagesBuilder.append('\n');
                     }
-                    currentTrainingSet=null;
-                }
-                double classificationError=((double)errorCounter/(KFold*foldDimension))*100;    //2.2
-                currentMessage=documentClassifierViewResources.getString("messages.classificationError")+" "+documentClassifierViewResources.getString("messages.For").toLowerCase()+" K-NN="+i+" "+documentClassifierViewResources.getString("messages.And").toLowerCase()+" K-Fold="+KFold+": "+classificationError+"%";
-                textAreaOutput.append(currentMessage+"\n");
-                if(isLogging) {
-                    infoLogger.info(currentMessage);
-                }
-                
-                averageErrors.put(i, classificationError);
-                
-                if (classificationError < minimumError.getValue()) {            //4
-                    minimumError = new AbstractMap.SimpleEntry<Integer,Double>(i, classificationError);
+                    currentMessagesBuilder.append(documentClassifierViewResources.getString("messages.Document")).append(" n° ").append(currentClassification.getIndex()+1).append("/").append(currentClassification.getControlSetSize())
+                            .append(" (fold n° ").append(currentClassification.getFold()+1).append("): ").append(documentClassifierViewResources.getString("messages.estimatedCategory")).append(": '").append(currentClassification.getEstimatedCategory())
+                            .append("', ").append(documentClassifierViewResources.getString("messages.effectiveCategories")).append(": '").append(currentClassification.getDocument().getCategories())
+                            .append("' - ").append(documentClassifierViewResources.getString("messages.currentNumberErrors")).append(": ").append(currentClassification.getNumberErrors());
                 }
+                currentMessages = currentMessagesBuilder.toString();
             }
-            return minimumError;
+            Document currentQuery = (isVisualizeCurrentDocument) ? classifications.get(classifications.size()-1).getDocument() : null;
+            output(currentMessages, currentQuery);
+        }
+        
+        public void classificationErrorCalculated(int K, int KFold, double classificationError) {
+            String currentMessage=documentClassifierViewResources.getString("messages.classificationError")+" "+documentClassifierViewResources.getString("messages.For").toLowerCase()+" K-NN="+K+" "+documentClassifierViewResources.getString("messages.And").toLowerCase()+" K-Fold="+KFold+": "+classificationError+"%";
+            output(currentMessage, null);
+        }
+        
+        public void progress(int completedIterations, int totalIterations) {
+            setProgress(completedIterations,0,totalIterations);
         }
         
         /**
@@ -1448,11 +1326,11 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
                 String currentMessage = documentClassifierViewResources.getString("messages.optimalValueKNN")+" " + result.getKey() + " ("+documentClassifierViewResources.getString("messages.classificationError")+": " + result.getValue() + "%)";
                 setMessage(currentMessage);
                 textAreaOutput.append(currentMessage+"\n");
-                if(isLogging) {
-                    infoLogger.info(currentMessage);
-                }
                 stopTime = Calendar.getInstance().getTimeInMillis();
                 long elapsedTime = stopTime - startTime;
+                if(validationLog != null) {
+                    validationLog.result(result.getKey(), result.getValue(), elapsedTime);
+                }
                 textAreaOutput.append(documentClassifierViewResources.getString("messages.totalExecutionTime") + ": " + elapsedTime + " ms");
                 application.setKNN(result.getKey());
             } catch (Exception ex) {
@@ -1479,6 +1357,25 @@ private void keyPressedDocuments(java.awt.event.KeyEvent evt) {//GEN-FIRST:event
         protected void failed(Throwable ex) {
             cancelled();
         }
+        
+        /**
+         * In any case, whatever is the final state of the task, the property 'taskRunning' is set to "false",
+         * and the log file (if logging is enabled) is closed.
+         */
+        @Override
+        protected void finished() {
+            setTaskRunning(false);
+            if(validationLog != null) {
+                /**
+                 * The records still waiting are written, and the log file is closed.
+                 */
+                try {
+                    validationLog.close();
+                } catch (IOException ex) {
+                    showErrorMessage(ex.toString());
+                }
+            }
+        }
     }
     
     // Variables declaration - do not modify//GEN-BEGIN:variables
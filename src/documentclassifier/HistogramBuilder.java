@@ -0,0 +1,135 @@
+package documentclassifier;
+
+import documentclassifier.Metriche.SparseVector;
+import java.util.Arrays;
+
+/**
+ * This class accumulates the frequencies of the terms of a document, identified by their identifiers inside the global
+ * {@link documentclassifier.Metriche.TermDictionary}, and then creates the histogram of the document as a {@link SparseVector}
+ * of relative frequencies.
+ * <p>
+ * The frequencies are memorized inside a hash table with open addressing, made of primitive arrays, so no object is created for
+ * each occurrence of a term; the arrays are reused for all the documents, so an instance of this class can't be shared between
+ * threads.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class HistogramBuilder {
+
+    private int[] tableTerms = new int[256];
+    private double[] tableFrequencies = new double[256];
+    /**
+     * The terms inserted until now, in the order they have been met, and the positions of their frequencies inside the table.
+     */
+    private int[] terms = new int[128];
+    private int[] slots = new int[128];
+    private int numberTerms;
+    /**
+     * The total weight of the occurrences of the terms not memorized (see {@link #addUnknown addUnknown}).
+     */
+    private double unknownWeight;
+    private float[] relativeFrequencies = new float[128];
+
+    public HistogramBuilder() {
+        Arrays.fill(tableTerms, -1);
+    }
+
+    /**
+     * This method adds an occurrence of a term to the histogram.
+     *
+     * @param term              The identifier of the term.
+     * @param weight            The weight of the occurrence.
+     */
+    public void add(int term, double weight) {
+        int mask = tableTerms.length - 1;
+        int slot = hash(term) & mask;
+        while (tableTerms[slot] != -1) {
+            if (tableTerms[slot] == term) {
+                tableFrequencies[slot] += weight;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        tableTerms[slot] = term;
+        tableFrequencies[slot] = weight;
+        if (numberTerms == terms.length) {
+            terms = Arrays.copyOf(terms, numberTerms * 2);
+            slots = Arrays.copyOf(slots, numberTerms * 2);
+        }
+        terms[numberTerms] = term;
+        slots[numberTerms] = slot;
+        numberTerms++;
+        if (numberTerms * 2 > tableTerms.length) {
+            grow();
+        }
+    }
+
+    /**
+     * This method adds an occurrence of a term that is not memorized in the histogram, but that is counted in the length of
+     * the document: In this way the relative frequencies of the other terms don't change.
+     *
+     * @param weight            The weight of the occurrence.
+     */
+    public void addUnknown(double weight) {
+        unknownWeight += weight;
+    }
+
+    /**
+     * This method creates the histogram of the terms added until now, normalizing their frequencies to the length of the
+     * document (so that they become relative), and then empties the builder, to be used for the next document.
+     *
+     * @return                  The histogram of the document.
+     */
+    public SparseVector build() {
+        double normalizationFactor = unknownWeight;
+        for (int i = 0; i < numberTerms; i++) {
+            normalizationFactor += tableFrequencies[slots[i]];
+        }
+        if (relativeFrequencies.length < numberTerms) {
+            relativeFrequencies = new float[terms.length];
+        }
+        for (int i = 0; i < numberTerms; i++) {
+            relativeFrequencies[i] = (float) (tableFrequencies[slots[i]] / normalizationFactor);
+        }
+        SparseVector histogram = new SparseVector(terms, relativeFrequencies, numberTerms);
+        clear();
+        return histogram;
+    }
+
+    /**
+     * This method empties the builder, resetting only the positions of the table that have been used.
+     */
+    public void clear() {
+        for (int i = 0; i < numberTerms; i++) {
+            tableTerms[slots[i]] = -1;
+        }
+        numberTerms = 0;
+        unknownWeight = 0;
+    }
+
+    /**
+     * This method doubles the dimension of the table, inserting again the terms in their new positions.
+     */
+    private void grow() {
+        int[] oldTableTerms = tableTerms;
+        double[] oldTableFrequencies = tableFrequencies;
+        tableTerms = new int[oldTableTerms.length * 2];
+        tableFrequencies = new double[oldTableTerms.length * 2];
+        Arrays.fill(tableTerms, -1);
+        int mask = tableTerms.length - 1;
+        for (int i = 0; i < numberTerms; i++) {
+            int slot = hash(terms[i]) & mask;
+            while (tableTerms[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            tableTerms[slot] = terms[i];
+            tableFrequencies[slot] = oldTableFrequencies[slots[i]];
+            slots[i] = slot;
+        }
+    }
+
+    private static int hash(int term) {
+        int hash = term * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
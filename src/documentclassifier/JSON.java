@@ -0,0 +1,68 @@
+package documentclassifier;
+
+/**
+ * This class contains the methods used to write the values of the records in JSON, shared by the {@link BatchClassifier}
+ * (format "json") and by the {@link ValidationLog} (files with extension .jsonl).
+ * <p>
+ * The records are always written on a single row: The special characters of the strings are escaped, and the values that
+ * can't be represented in JSON are written as null.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class JSON {
+
+    private JSON() {
+    }
+
+    /**
+     * This method returns a string as a JSON string literal, between quotes and with the special characters escaped.
+     *
+     * @param value             The string, or null.
+     * @return                  The JSON string literal, or null if the string is null.
+     */
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2);
+        quoted.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            switch (character) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (character < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        quoted.append(character);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * This method returns a number as a JSON number.
+     * NaN and the infinities don't exist in JSON, so they are written as null.
+     *
+     * @param value             The number.
+     * @return                  The JSON number, or null if the number isn't finite.
+     */
+    static String number(double value) {
+        return (Double.isNaN(value) || Double.isInfinite(value)) ? "null" : String.valueOf(value);
+    }
+}
@@ -0,0 +1,255 @@
+package documentclassifier;
+
+import documentclassifier.Metriche.BhattacharryaDistanceComparator;
+import documentclassifier.Metriche.SparseVector;
+import documentclassifier.Metriche.TFIDFComparator;
+import documentclassifier.Metriche.TopKSelector;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * This class classifies query documents with the K-NN algorithm, against a training set compiled into a {@link TrainingSetIndex}.
+ * <p>
+ * It contains the part of the classification that doesn't depend on the graphical interface: the calculation of the distance
+ * between the query and each document of the training set, the ranking of the nearest documents, and the choice of the most
+ * frequent category among them.
+ * It is used both by the tasks of {@link DocumentClassifierView} and by the {@link BatchClassifier}.
+ * An instance of this class doesn't have a mutable state, so it can classify more queries at the same time from different threads.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+class KNNClassifier {
+
+    /**
+     * The training set, compiled into an inverted index.
+     */
+    private TrainingSetIndex trainingSet;
+    /**
+     * The name of the metric used to calculate the distance between the query and each document of the training set.
+     */
+    private String metric;
+
+    /**
+     * This constructor creates a new classifier for the training set and the metric specified as input parameters.
+     * 
+     * @param trainingSet       The training set, compiled into an inverted index.
+     * @param metric            The name of the metric ("Bhattacharrya" or "TF-IDF").
+     */
+    public KNNClassifier(TrainingSetIndex trainingSet, String metric) {
+        this.trainingSet = trainingSet;
+        this.metric = metric;
+    }
+
+    /**
+     * This method calculates the distance (or the cosine, for the TF-IDF) between a query and each document of a training set.
+     * 
+     * @param trainingSet       The training set, compiled into an inverted index.
+     * @param query             The histogram of the query document.
+     * @param metric            The name of the metric ("Bhattacharrya" or "TF-IDF").
+     * @return                  An array containing, for each document of the training set (in the order of their identifiers),
+     *                          the value of the metric between it and the query.
+     */
+    static double[] calculateDistances(TrainingSetIndex trainingSet, SparseVector query, String metric) {
+        return calculateDistances(trainingSet, query, metric, 0);
+    }
+
+    /**
+     * This method calculates the value of the metric between a query and the documents of a training set starting from
+     * the one specified, without visiting the postings of the previous documents.
+     * 
+     * @param trainingSet       The training set, compiled into an inverted index.
+     * @param query             The histogram of the query document.
+     * @param metric            The name of the metric ("Bhattacharrya" or "TF-IDF").
+     * @param firstDocument     The identifier of the first document whose value must be calculated.
+     * @return                  An array containing, for each document of the training set (in the order of their identifiers),
+     *                          the value of the metric between it and the query: The values before the first document are
+     *                          not calculated.
+     */
+    static double[] calculateDistances(TrainingSetIndex trainingSet, SparseVector query, String metric, int firstDocument) {
+        if (metric.equals("Bhattacharrya")) {
+            return BhattacharryaDistanceComparator.calculateDistance(trainingSet.getIndex(), query, firstDocument);
+        } else {
+            return TFIDFComparator.calculateCosine(trainingSet.getIndex(), query, firstDocument);
+        }
+    }
+
+    /**
+     * This method ranks the documents of the training set nearest to a query.
+     * 
+     * @param query             The query document.
+     * @param numberDocuments   The number of documents nearest to the query that must be ranked.
+     * @return                  The list with information on the nearest documents of the training set (in the same format
+     *                          created by {@link #createInfoDocument createInfoDocument}), ordered according to their distance
+     *                          from the query.
+     */
+    public List<Map<String, Object>> rank(Document query, int numberDocuments) {
+        double[] distances = calculateDistances(trainingSet, query.getHistogram(), metric);
+        int[] nearestDocuments = TopKSelector.selectTopK(distances, numberDocuments, metric.equals("Bhattacharrya"));
+        List<Map<String, Object>> infoDocuments = new ArrayList<Map<String, Object>>(nearestDocuments.length);
+        for (int document : nearestDocuments) {
+            infoDocuments.add(createInfoDocument(trainingSet.getDocuments().get(document), distances[document], metric));
+        }
+        return infoDocuments;
+    }
+
+    /**
+     * This method creates the map with the information on a document of the training set, that is visualized in the
+     * list of ranked documents and read by the K-NN.
+     * 
+     * @param document      The document of the training set.
+     * @param distance      The distance (or the cosine, for the TF-IDF) between the document and the query.
+     * @param metric        The name of the current metric.
+     * @return              The map with the information on the document.
+     */
+    static Map<String, Object> createInfoDocument(Document document, double distance, String metric) {
+        Map<String, Object> infoDocument=new LinkedHashMap<String, Object>();
+        infoDocument.put("Distance", distance);
+        if (!metric.equals("Bhattacharrya")) {
+            /**
+             * The weights are memorized in single precision, so the cosine of two identical documents can be a little
+             * bigger than 1: It is limited to [-1,1], otherwise the angle would be NaN.
+             */
+            infoDocument.put("Angle", Math.toDegrees(Math.acos(Math.max(-1.0, Math.min(1.0, distance)))));
+        }
+        infoDocument.put("Categories", document.getCategories());
+        infoDocument.put("Title", document.getTitle());
+        infoDocument.put("Path", document.getPath());
+        return infoDocument;
+    }
+    
+    /**
+     * It determines the category of the query document, using the K-NN algorithm.
+     * 
+     * @param   infoDocuments   A list with information about the training set's documents, ordered according to the distance
+     *                          of each one to the query document.
+     * @param   K               The value of K for the K-NN-->The first K documents in the list will be taken into exam, to determine
+     *                          the most frequent category, that will be assigned to the query document.
+     * @return                  The name of the category determined with the K-NN algorithm.
+     */
+    static String determineCategory(List<Map<String, Object>> infoDocuments, int K) {
+
+        /**
+         * The following data structure is used by the method: An hash table, indexed on the names of the training set's categories,
+         * and having as values pair of integers that represent, in order:
+         * 1 - The minimum distance, from the query document, of one of the documents belonging to the category stored on the key,
+         *     that appear among the first k of the list.
+         * 2 - The frequency of the category stored on the key.
+         * This data structure is used to determine the most frequent category among the ones of the first K documents, and to solve
+         * this particular case: If two or more categories have the same frequency, the algorithm chooses the one that appears before
+         * in the list, that is the one that has the 1st document less distant from the query.
+         */
+        Map<String, Entry<Integer, Integer>> categoriesFrequencies = new HashMap<String, Entry<Integer, Integer>>();
+        /**
+         * The categories are read from the map as a set of unknown type, to avoid an unchecked cast: Its elements
+         * are the names of the categories.
+         */
+        Set<?> categoriesCurrentDocument;
+        int maxFrequency, currentFrequency;
+        Entry<Integer, Integer> currentEntry;
+        Entry<String, Entry<Integer, Integer>> maxEntry = null;
+        int numberExaminedCategories=0;
+        boolean exit=false;
+        for (int i = 0; i < K; i++) {
+            categoriesCurrentDocument=(Set<?>) infoDocuments.get(i).get("Categories");
+            for(Object category : categoriesCurrentDocument) {
+                String currentCategory = (String) category;
+                numberExaminedCategories++;
+                currentEntry = categoriesFrequencies.get(currentCategory);
+                if (currentEntry == null) {
+                    currentEntry = new AbstractMap.SimpleEntry<Integer,Integer>(i, 0);
+                }
+                currentEntry.setValue(currentEntry.getValue() + 1);
+                //The frequency of the current category is incremented by 1
+                categoriesFrequencies.put(currentCategory, currentEntry);
+                
+                if (i == 0) {
+                    /**
+                     * On the 1st iteration, the variable 'maxEntry' is initialized with:
+                     *  - Key: The name of the category present in the 1st row of the input list.
+                     *  - Value: Pair <0,1>.
+                     */
+                    maxEntry = new AbstractMap.SimpleEntry<String,Entry<Integer,Integer>>(currentCategory, currentEntry);
+                }
+                maxFrequency = maxEntry.getValue().getValue();
+                currentFrequency = currentEntry.getValue();
+                if (currentFrequency > maxFrequency ||
+                        (currentFrequency == maxFrequency && currentEntry.getKey() < maxEntry.getValue().getKey())) {
+                    maxEntry = new AbstractMap.SimpleEntry<String,Entry<Integer,Integer>>(currentCategory, currentEntry);
+                }
+            }
+            if(exit) {
+                break;
+            }
+            /**
+             * If the next document has so much categories (more than 1) to reach or surpass the limit of K examined
+             * categories-->The next iteration of the cycle will be the last.
+             */
+            if(i<=infoDocuments.size()-2 && numberExaminedCategories+((Set<?>)infoDocuments.get(i+1).get("Categories")).size()>=K) {
+                exit=true;
+            }
+        }
+        return maxEntry.getKey();
+    }
+
+    /**
+     * It determines the category of the query document with the K-NN algorithm, for all the values of K inside an interval,
+     * reading the list of the nearest documents only once.
+     * For each value of K the result is the same returned by {@link #determineCategory determineCategory}: The documents
+     * are examined in order, updating the frequencies of their categories, and the most frequent category is read after the
+     * last document that the K-NN with that value of K would examine.
+     *
+     * @param   neighbours      The documents of the training set nearest to the query, ordered according to their distance
+     *                          from it: They must be at least KNNMaximum (or all the documents of the training set).
+     * @param   KNNMinimum      The minimum value of K.
+     * @param   KNNMaximum      The maximum value of K.
+     * @return                  The names of the categories determined with the K-NN algorithm, in the position K-KNNMinimum
+     *                          for each value of K.
+     */
+    static String[] determineCategories(Document[] neighbours, int KNNMinimum, int KNNMaximum) {
+        String[] categories = new String[KNNMaximum - KNNMinimum + 1];
+        /**
+         * For each category: The position of the 1st document of the list belonging to it, and its frequency.
+         */
+        Map<String, int[]> categoriesFrequencies = new HashMap<String, int[]>();
+        String maxCategory = null;
+        int[] maxEntry = null;
+        int numberExaminedCategories = 0;
+        int K = KNNMinimum;
+        for (int i = 0; i < neighbours.length && K <= KNNMaximum; i++) {
+            for (String currentCategory : neighbours[i].getCategories()) {
+                numberExaminedCategories++;
+                int[] currentEntry = categoriesFrequencies.get(currentCategory);
+                if (currentEntry == null) {
+                    currentEntry = new int[]{i, 0};
+                    categoriesFrequencies.put(currentCategory, currentEntry);
+                }
+                currentEntry[1]++;
+                if (i == 0 || currentEntry[1] > maxEntry[1] || (currentEntry[1] == maxEntry[1] && currentEntry[0] < maxEntry[0])) {
+                    maxCategory = currentCategory;
+                    maxEntry = currentEntry;
+                }
+            }
+            /**
+             * The K-NN stops after the K-th document, or before it if the categories examined until now reach the limit of K
+             * (but never before the 1st document).
+             */
+            while (K <= KNNMaximum && (i == K - 1 || (i > 0 && numberExaminedCategories >= K))) {
+                categories[K - KNNMinimum] = maxCategory;
+                K++;
+            }
+        }
+        /**
+         * If the training set has less than KNNMaximum documents, the greatest values of K examine all of them.
+         */
+        for (; K <= KNNMaximum; K++) {
+            categories[K - KNNMinimum] = maxCategory;
+        }
+        return categories;
+    }
+}
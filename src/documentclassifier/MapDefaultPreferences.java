@@ -1,5 +1,6 @@
 package documentclassifier;
 
+import documentclassifier.Scrapers.DocumentCharset;
 import java.util.HashMap;
 
 /**
@@ -33,6 +34,11 @@ public class MapDefaultPreferences extends HashMap<String, String> {
      * from the query document, and from documents of the training set.
      */
     public static final String SCRAPER = "Scraper";
+    /**
+     * The name of the charset used to decode the documents that don't declare their charset
+     * (through a byte order mark, the HTTP response or a <meta> tag).
+     */
+    public static final String CHARSET = "Charset";
     /**
      * If removal of stopwords from each document is enabled or not.
      */
@@ -82,6 +88,18 @@ public class MapDefaultPreferences extends HashMap<String, String> {
      * of samples for each category).
      */
     public static final String isSTRATIFIED = "isStratified";
+    /**
+     * If the K-Fold cross validation must select the nearest documents of each query from
+     * a matrix with the distances between all the documents of the training set, calculated
+     * only once, instead of ranking them again each time against the training set of each fold.
+     */
+    public static final String isSIMILARITYMATRIX = "isSimilarityMatrix";
+    /**
+     * If the validation must be leave-one-out, instead of K-Fold: Each document is classified
+     * using all the other documents of the training set, ranking it only once against the whole
+     * training set (the value of K-Fold and the stratified sampling are ignored).
+     */
+    public static final String isLEAVEONEOUT = "isLeaveOneOut";
     /**
      * If logging during the validation phase is enabled or not.
      */
@@ -100,10 +118,15 @@ public class MapDefaultPreferences extends HashMap<String, String> {
      */
     public static final String isVISUALIZECURRENTDOCUMENT = "isVisualizeCurrentDocument";
     /**
-     * If, during the validation phase, the list of documents of the training set,
-     * ranked to the current query, must be visualized or not.
+     * If, during the validation phase, the outcome of the classification of each
+     * document must be visualized in the graphical interface.
+     */
+    public static final String isVISUALIZECLASSIFICATIONS = "isVisualizeClassifications";
+    /**
+     * If the texts of the documents of the training set must be kept in memory, instead of
+     * reading them again from their files when they are visualized.
      */
-    public static final String isVISUALIZELISTRANKEDDOCUMENTS = "isVisualizeListRankedDocuments";
+    public static final String isKEEPTEXTS = "isKeepTexts";
     /**
      * The path of the training set's directory.
      */
@@ -130,6 +153,13 @@ public class MapDefaultPreferences extends HashMap<String, String> {
          * the only one available for now, inside the packge {@link documentclassifier.Scrapers}.
          */
         put(SCRAPER, application.getScrapersPackageName() + ".ANSAScraper");
+        /**
+         * The documents that don't declare their charset are by default decoded with ISO-8859-1
+         * ({@link documentclassifier.Scrapers.DocumentCharset#DEFAULT}), the charset of the
+         * pages of the ANSA website, and not with the default charset of the platform, so that
+         * the same training set produces the same histograms on every machine.
+         */
+        put(CHARSET, DocumentCharset.DEFAULT.name());
         /**
          * The default stopwords list is the one for the Italian language.
          */
@@ -169,6 +199,16 @@ public class MapDefaultPreferences extends HashMap<String, String> {
          * The stratified sampling for K-Fold cross validation is by default disabled.
          */
         put(isSTRATIFIED, "false");
+        /**
+         * The similarity matrix is by default disabled, because it requires memory proportional
+         * to the square of the dimension of the training set, and with the TF-IDF it gives
+         * approximated results.
+         */
+        put(isSIMILARITYMATRIX, "false");
+        /**
+         * The validation is by default K-Fold cross validation, not leave-one-out.
+         */
+        put(isLEAVEONEOUT, "false");
         /**
          * The logging of status messages during the validation phase is by default disabled
          * (for performance reasons).
@@ -176,9 +216,9 @@ public class MapDefaultPreferences extends HashMap<String, String> {
         put(isLOGGING, "false");
         /**
          * The default path of the log file (taken into consideration if logging is enabled)
-         * is './LogFile.log'.
+         * is './LogFile.tsv', written in TSV (see {@link ValidationLog}).
          */
-        put(LOGFILE, programParentDir + "LogFile.log");
+        put(LOGFILE, programParentDir + "LogFile.tsv");
         /**
          * By default the log file is overwritten each time it is opened.
          */
@@ -189,10 +229,15 @@ public class MapDefaultPreferences extends HashMap<String, String> {
          */
         put(isVISUALIZECURRENTDOCUMENT, "false");
         /**
-         * The visualization of documents of the training set, ranked to the current
-         * query, during the validation phase, is by default disabled (for performance
-         * reasons).
+         * The visualization of the outcome of each document, during the validation phase,
+         * is by default disabled (for performance reasons): Only the classification error
+         * for each value of K is shown.
+         */
+        put(isVISUALIZECLASSIFICATIONS, "false");
+        /**
+         * The texts of the documents of the training set are by default not kept in memory
+         * (for memory reasons): Only their histograms are needed to classify a query.
          */
-        put(isVISUALIZELISTRANKEDDOCUMENTS, "false");
+        put(isKEEPTEXTS, "false");
     }
 }
@@ -2,18 +2,14 @@
 package documentclassifier.Metriche;
 
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.ResourceBundle;
-import java.util.Set;
 
 /**
  * This class implements the Bhattacharrya distance, using as the weighting function for the terms of each document
  * the relative frequency, already calculated during the generation of each document's histogram.
  * <p>
- * It implements the interface {@link Comparator}, on elements of type Entry<Map<String,Object>, Map<String, Double>>,
+ * It implements the interface {@link Comparator}, on elements of type Entry<Map<String,Object>, SparseVector>,
  * each one containing information on single documents of the training set.
  * Using the information present in each entry, the Comparator orders the training set's documents on their Bhattacharrya distance
  * to the query document.
@@ -21,7 +17,7 @@ import java.util.Set;
  * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
  * @see         Comparator
  */
-public class BhattacharryaDistanceComparator implements Comparator<Entry<Map<String,Object>,Map<String,Double>>> {
+public class BhattacharryaDistanceComparator implements Comparator<Entry<Map<String,Object>,SparseVector>> {
     
     /**
      * Method that implements the interface {@link Comparator}, to compare two documents whose Bhattacharrya
@@ -37,7 +33,7 @@ public class BhattacharryaDistanceComparator implements Comparator<Entry<Map<Str
      * @return              An integer between these 3 possible values: -1, 0 or 1, representing the ordering
      *                      between the 1st and the 2nd input document.
      */
-    public int compare(Entry<Map<String,Object>,Map<String,Double>> A, Entry<Map<String,Object>,Map<String,Double>> B) {
+    public int compare(Entry<Map<String,Object>,SparseVector> A, Entry<Map<String,Object>,SparseVector> B) {
 
         /**
          * This is the distance of A from the current query document, calculated previously
@@ -60,43 +56,57 @@ public class BhattacharryaDistanceComparator implements Comparator<Entry<Map<Str
     }
     
     /**
-     * Static method used for calculation of the Bhattacharrya distance, between each document of a set (represented by
-     * a vector that for each document's term contains its relative frequency), and a reference document (query).
+     * Static method used for calculation of the Bhattacharrya distance, between each document of the training set
+     * (compiled into an inverted index), and a reference document (query).
+     * <p>
+     * The scalar product between the square roots of the histograms' components is accumulated only visiting the
+     * postings of the query's terms: Terms not common between a document and the query give in any case a contribution
+     * of 0 to the final result, so it would be a waste of computational time to take them into consideration.
+     * At the end of the calculation, we apply the formula of the Bhattacharrya distance: d(A,B)=sqrt(1-prodottoscalare).
      * 
-     * @param documentSet   A set of documents, represented with a list of instances of the class Entry<Map<String,Object>, Map<String, Double>>,
-     *                      whose key is a map {@link String}->{@link Object}, containing information on a document, and whose value is a map
-     *                      {@link String}->{@link Double}, which represents the histogram of terms of the document (after pre-processing).
-     * @param query         The histogram of the query document all the cosines refer to.
-     *                      It is implemented by a map, that associates keys of type {@link String} to elements of type {@link Double}.
+     * @param index         The inverted index of the training set.
+     * @param query         The histogram of the query document all the distances refer to.
+     *                      It is implemented by a {@link SparseVector}, whose terms are identified by the {@link TermDictionary}.
+     * @return              An array containing, for each document of the index (in the order of their identifiers), its
+     *                      Bhattacharrya distance from the query.
      */
-    public static void calculateDistance(LinkedList<Entry<Map<String, Object>, Map<String, Double>>> documentSet, Map<String, Double> query) {
-        
-        Map<String,Double> currentHistogram;
-        Set<String> intersection;
-        /**
-         * For each document of the document set we calculate the scalar product between it and the query document,
-         * but taking into consideration the square root of their histogram's components.
-         * At the end of the calculation, we apply the formula of the Bhattacharrya distance: d(A,B)=sqrt(1-prodottoscalare).
-         */
-        for(Entry<Map<String,Object>,Map<String,Double>> currentDocument : documentSet ) {
-            
-            double sum=0.0;
-            currentHistogram=currentDocument.getValue();
+    public static double[] calculateDistance(InvertedIndex index, SparseVector query) {
+        return calculateDistance(index, query, 0);
+    }
+
+    /**
+     * This method calculates the Bhattacharrya distance like the previous one, but only for the documents of the index whose
+     * identifier is greater than or equal to the one specified, skipping the postings of the other documents.
+     * It is used to calculate the distances between the documents of the index themselves only once for each pair.
+     *
+     * @param index         The inverted index of the training set.
+     * @param query         The histogram of the query document all the distances refer to.
+     * @param firstDocument The identifier of the first document whose distance must be calculated.
+     * @return              An array containing, for each document of the index, its Bhattacharrya distance from the query:
+     *                      The values of the documents before the first one are not calculated.
+     */
+    public static double[] calculateDistance(InvertedIndex index, SparseVector query, int firstDocument) {
+
+        double[] distances = new double[index.size()];
+        InvertedIndex.Postings termPostings;
+        for (int j = 0; j < query.size(); j++) {
+            termPostings = index.getPostings(query.getTerm(j));
+            if (termPostings == null) {
+                continue;
+            }
+            double queryWeight = query.getWeight(j);
+            for (int i = (firstDocument > 0) ? termPostings.search(firstDocument) : 0; i < termPostings.size(); i++) {
+                distances[termPostings.getDocument(i)] += Math.sqrt(queryWeight * termPostings.getWeight(i));
+            }
+        }
+        for (int document = firstDocument; document < distances.length; document++) {
             /**
-             * The current document and the query document are intersected, and the calculation of the Bhattacharrya
-             * distance takes into consideration only the common terms between them.
-             * It would in fact be a waste of computational time to try to calculate the scalar product, taking into
-             * consideration also terms not common between them, because in any case they give a contribution of 0
-             * to the final result.
+             * The weights are memorized in single precision: The coefficient of two identical histograms can
+             * therefore be a little bigger than 1, and the distance must be limited to 0 to avoid NaN.
              */
-            intersection=new HashSet<String>();
-            intersection.addAll(currentHistogram.keySet());
-            intersection.retainAll(query.keySet());
-            for ( String Token : intersection ) {
-                sum = sum + (Math.sqrt(query.get(Token) * currentHistogram.get(Token)));
-            }
-            currentDocument.getKey().put("Distance", new Double(Math.sqrt(1-sum)));
+            distances[document] = Math.sqrt(Math.max(0.0, 1 - distances[document]));
         }
+        return distances;
     }
     
 }
@@ -0,0 +1,85 @@
+package documentclassifier.Metriche;
+
+/**
+ * This class memorizes, for each term of a training set, its Document Frequency (DFj), that is the number of
+ * documents of the training set that contain it, and from this its Inverse Document Frequency (IDFj), used by
+ * the metric TF-IDF.
+ * <p>
+ * The table is built only once together with the training set, updating it incrementally every time a document
+ * is added to it, so that the classification of a query doesn't need anymore to count the occurrences of each term
+ * inside the whole training set.
+ * The query documents are not part of the table: Their terms are weighted with the IDF of the training set.
+ * <p>
+ * The terms are identified by their identifier inside the {@link TermDictionary}, which is also their position
+ * inside the arrays of the table.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public class DocumentFrequencyTable {
+
+    /**
+     * Array that associates each term to the number of documents containing it.
+     */
+    private int[] documentFrequencies;
+    /**
+     * Array that associates each term to its Inverse Document Frequency.
+     * It is calculated again only the first time it is requested after a modification of the table,
+     * because every new document changes the IDF of all terms.
+     */
+    private double[] inverseDocumentFrequencies;
+    /**
+     * The number of documents of the training set (N).
+     */
+    private int numberDocuments;
+
+    /**
+     * This constructor creates a new empty table.
+     */
+    public DocumentFrequencyTable() {
+        documentFrequencies = new int[0];
+        numberDocuments = 0;
+    }
+
+    /**
+     * This method updates the table after the addition of a document to the training set.
+     *
+     * @param histogram         The histogram of the document, whose terms are all different.
+     */
+    public synchronized void addDocument(SparseVector histogram) {
+        if (histogram.size() > 0 && histogram.getTerm(histogram.size() - 1) >= documentFrequencies.length) {
+            int[] newDocumentFrequencies = new int[Math.max(histogram.getTerm(histogram.size() - 1) + 1, 2 * documentFrequencies.length)];
+            System.arraycopy(documentFrequencies, 0, newDocumentFrequencies, 0, documentFrequencies.length);
+            documentFrequencies = newDocumentFrequencies;
+        }
+        for (int i = 0; i < histogram.size(); i++) {
+            documentFrequencies[histogram.getTerm(i)]++;
+        }
+        numberDocuments++;
+        inverseDocumentFrequencies = null;
+    }
+
+    /**
+     * This method returns the Inverse Document Frequency of every term of the training set, calculated as
+     * IDFj=log(N/DFj).
+     * <p>
+     * The returned array is indexed by the identifier of the terms: The terms not present in the training set
+     * (including the ones whose identifier is greater than the length of the array) have IDF 0, so they don't
+     * contribute to the TF-IDF of any document.
+     * The array must not be modified, and it is not changed by later updates of the table: A caller can therefore
+     * read from it without synchronization, for the whole duration of the classification of a query.
+     *
+     * @return                  An array that associates each term of the training set to its Inverse Document Frequency.
+     */
+    public synchronized double[] getInverseDocumentFrequencies() {
+        if (inverseDocumentFrequencies == null) {
+            double[] IDF = new double[documentFrequencies.length];
+            for (int term = 0; term < documentFrequencies.length; term++) {
+                if (documentFrequencies[term] > 0) {
+                    IDF[term] = Math.log10((double) numberDocuments / documentFrequencies[term]);
+                }
+            }
+            inverseDocumentFrequencies = IDF;
+        }
+        return inverseDocumentFrequencies;
+    }
+}
@@ -0,0 +1,253 @@
+package documentclassifier.Metriche;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents the training set compiled into an inverted index: for each term it stores the list
+ * (called "postings") of the documents containing it, together with the weight (the relative frequency) the
+ * term has inside each one of them.
+ * <p>
+ * Documents are identified by an integer, assigned in order of insertion starting from 0, so that the metrics
+ * can accumulate their values inside a simple array indexed by document, visiting only the postings of the
+ * terms that appear in the query, instead than the whole histogram of every document of the training set.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public class InvertedIndex {
+
+    /**
+     * Array that associates each term of the training set, through its identifier inside the {@link TermDictionary},
+     * to the list of documents containing it.
+     * The elements corresponding to terms not present in the training set are null.
+     */
+    private Postings[] postings;
+    /**
+     * The histograms of the indexed documents, in the order of their identifiers.
+     * They are needed by the metrics that, like the TF-IDF, must consider all the terms of a document (for
+     * example to calculate its norm), and not only the ones it has in common with the query.
+     */
+    private List<SparseVector> histograms;
+    /**
+     * The Document Frequency of each term of the indexed documents, updated every time a document is added.
+     */
+    private DocumentFrequencyTable documentFrequencies;
+    /**
+     * The histograms of the indexed documents weighted with the metric TF-IDF, together with their norms.
+     * They are calculated only the first time they are requested after a change of the Inverse Document
+     * Frequencies, and not anymore for each query.
+     */
+    private TFIDFWeights tfidfWeights;
+
+    /**
+     * This constructor creates a new empty index.
+     */
+    public InvertedIndex() {
+        postings = new Postings[0];
+        histograms = new ArrayList<SparseVector>();
+        documentFrequencies = new DocumentFrequencyTable();
+    }
+
+    /**
+     * This method adds a document to the index, adding an entry to the postings of each one of its terms.
+     *
+     * @param histogram         The histogram of the document to add.
+     * @return                  The identifier assigned to the document inside the index.
+     */
+    public int addDocument(SparseVector histogram) {
+        int document = histograms.size();
+        histograms.add(histogram);
+        /**
+         * The terms are ordered, so the last one has the greatest identifier.
+         */
+        if (histogram.size() > 0 && histogram.getTerm(histogram.size() - 1) >= postings.length) {
+            Postings[] newPostings = new Postings[Math.max(histogram.getTerm(histogram.size() - 1) + 1, 2 * postings.length)];
+            System.arraycopy(postings, 0, newPostings, 0, postings.length);
+            postings = newPostings;
+        }
+        for (int i = 0; i < histogram.size(); i++) {
+            int term = histogram.getTerm(i);
+            if (postings[term] == null) {
+                postings[term] = new Postings();
+            }
+            postings[term].add(document, histogram.getWeight(i));
+        }
+        documentFrequencies.addDocument(histogram);
+        return document;
+    }
+
+    /**
+     * Accessor method to read the number of documents inside the index.
+     *
+     * @return                  The number of indexed documents.
+     */
+    public int size() {
+        return histograms.size();
+    }
+
+    /**
+     * Accessor method to read the histogram of an indexed document.
+     *
+     * @param document          The identifier of the document.
+     * @return                  The histogram of the document.
+     */
+    public SparseVector getHistogram(int document) {
+        return histograms.get(document);
+    }
+
+    /**
+     * This method returns the postings of a term.
+     *
+     * @param term              The identifier of the term whose postings must be returned.
+     * @return                  The postings of the term, or null if no indexed document contains it.
+     */
+    public Postings getPostings(int term) {
+        return (term < postings.length) ? postings[term] : null;
+    }
+
+    /**
+     * This method returns the norms of the histograms of the indexed documents weighted with the metric TF-IDF.
+     * <p>
+     * They are calculated again only if the Inverse Document Frequencies have changed after the last call (that is,
+     * if some document has been added to the index), otherwise the same instance is returned.
+     *
+     * @return                  The TF-IDF norms of the indexed documents, consistent with the current IDF of the terms.
+     */
+    public synchronized TFIDFWeights getTFIDFWeights() {
+        double[] IDF = documentFrequencies.getInverseDocumentFrequencies();
+        if (tfidfWeights == null || tfidfWeights.IDF != IDF) {
+            tfidfWeights = new TFIDFWeights(IDF, histograms);
+        }
+        return tfidfWeights;
+    }
+
+    /**
+     * The norms of the histograms of the indexed documents, with the weight of each term multiplied by its Inverse
+     * Document Frequency: The weighted vectors themselves are not memorized, since the scalar products are accumulated
+     * from the postings, multiplying their weights by the IDF of each term of the query.
+     * An instance of this class refers to a single version of the IDF, and it is never modified.
+     */
+    public static class TFIDFWeights {
+
+        private final double[] IDF;
+        private final double[] twoNorms;
+
+        private TFIDFWeights(double[] IDF, List<SparseVector> histograms) {
+            this.IDF = IDF;
+            twoNorms = new double[histograms.size()];
+            for (int document = 0; document < twoNorms.length; document++) {
+                SparseVector histogram = histograms.get(document);
+                double twoNorm = 0.0;
+                for (int i = 0; i < histogram.size(); i++) {
+                    int term = histogram.getTerm(i);
+                    if (term < IDF.length) {
+                        double TFIDF = histogram.getWeight(i) * IDF[term];
+                        twoNorm += TFIDF * TFIDF;
+                    }
+                }
+                twoNorms[document] = Math.sqrt(twoNorm);
+            }
+        }
+
+        /**
+         * Accessor method to read the Inverse Document Frequencies the norms have been calculated with.
+         *
+         * @return          The array that associates each term to its IDF. It must not be modified.
+         */
+        public double[] getInverseDocumentFrequencies() {
+            return IDF;
+        }
+
+        /**
+         * Accessor method to read the norm of the TF-IDF vector of an indexed document.
+         *
+         * @param document  The identifier of the document.
+         * @return          The norm 2 of the TF-IDF vector of the document.
+         */
+        public double getTwoNorm(int document) {
+            return twoNorms[document];
+        }
+    }
+
+    /**
+     * The list of documents that contain a term, represented with two parallel arrays (the identifiers of the
+     * documents, and the weight of the term inside each one of them), to avoid allocating an object for every entry.
+     * The documents are added to the index in order, so their identifiers are in ascending order.
+     */
+    public static class Postings {
+
+        private int[] documents = new int[4];
+        private float[] weights = new float[4];
+        private int size = 0;
+
+        /**
+         * This method appends a document to the postings, doubling the capacity of the arrays when they are full.
+         *
+         * @param document      The identifier of the document.
+         * @param weight        The weight of the term inside the document.
+         */
+        private void add(int document, float weight) {
+            if (size == documents.length) {
+                int[] newDocuments = new int[2 * size];
+                float[] newWeights = new float[2 * size];
+                System.arraycopy(documents, 0, newDocuments, 0, size);
+                System.arraycopy(weights, 0, newWeights, 0, size);
+                documents = newDocuments;
+                weights = newWeights;
+            }
+            documents[size] = document;
+            weights[size] = weight;
+            size++;
+        }
+
+        /**
+         * This method searches the first document of the postings whose identifier is not lower than the one specified,
+         * through a binary search.
+         *
+         * @param document  The identifier of a document.
+         * @return          The position of the first document with an identifier greater than or equal to the one specified,
+         *                  or the number of documents in the postings if there isn't any.
+         */
+        public int search(int document) {
+            int low = 0, high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (documents[middle] < document) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Accessor method to read the number of documents in the postings.
+         *
+         * @return          The number of documents containing the term.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Accessor method to read the identifier of the i-th document in the postings.
+         *
+         * @param i         The position inside the postings.
+         * @return          The identifier of the document.
+         */
+        public int getDocument(int i) {
+            return documents[i];
+        }
+
+        /**
+         * Accessor method to read the weight of the term inside the i-th document in the postings.
+         *
+         * @param i         The position inside the postings.
+         * @return          The weight of the term inside the document.
+         */
+        public float getWeight(int i) {
+            return weights[i];
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package documentclassifier.Metriche;
+
+/**
+ * This class represents the histogram of a document like a sparse vector: only the terms with a weight different
+ * from 0 are memorized, inside two parallel arrays containing their identifiers (assigned by the {@link TermDictionary})
+ * ordered in ascending way, and their weights.
+ * <p>
+ * In comparison with a map from {@link String} to {@link Double}, this representation doesn't need an object for each
+ * term, and the vector can be scanned in order of the identifiers of its terms, for example to add it to an
+ * {@link InvertedIndex}, without allocating any temporary set.
+ * <p>
+ * An instance of this class is immutable.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public final class SparseVector {
+
+    /**
+     * The identifiers of the terms, ordered in ascending way.
+     */
+    private final int[] terms;
+    /**
+     * The weights of the terms, in the same order of their identifiers.
+     */
+    private final float[] weights;
+
+    /**
+     * This constructor creates a vector from two parallel arrays, that are ordered (together) in ascending way of
+     * the identifiers of the terms.
+     * The arrays are copied, so they can be reused by the caller.
+     *
+     * @param terms             The identifiers of the terms, without duplicates.
+     * @param weights           The weight of each term.
+     * @param length            The number of elements of the arrays that must be considered.
+     */
+    public SparseVector(int[] terms, float[] weights, int length) {
+        this.terms = new int[length];
+        this.weights = new float[length];
+        System.arraycopy(terms, 0, this.terms, 0, length);
+        System.arraycopy(weights, 0, this.weights, 0, length);
+        sort(0, length - 1);
+    }
+
+    /**
+     * Accessor method to read the number of terms of the vector.
+     *
+     * @return                  The number of terms with a weight different from 0.
+     */
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     * Accessor method to read the identifier of the i-th term of the vector.
+     *
+     * @param i                 The position of the term, between 0 and {@link #size size}-1.
+     * @return                  The identifier of the term.
+     */
+    public int getTerm(int i) {
+        return terms[i];
+    }
+
+    /**
+     * Accessor method to read the weight of the i-th term of the vector.
+     *
+     * @param i                 The position of the term, between 0 and {@link #size size}-1.
+     * @return                  The weight of the term.
+     */
+    public float getWeight(int i) {
+        return weights[i];
+    }
+
+    /**
+     * This method orders the two parallel arrays, between the positions low and high (both included), in ascending
+     * way of the identifiers of the terms.
+     * It's a simple quicksort, since the arrays of the JDK can't be ordered together with another one.
+     */
+    private void sort(int low, int high) {
+        while (low < high) {
+            int pivot = terms[(low + high) >>> 1];
+            int i = low, j = high;
+            while (i <= j) {
+                while (terms[i] < pivot) {
+                    i++;
+                }
+                while (terms[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int term = terms[i];
+                    terms[i] = terms[j];
+                    terms[j] = term;
+                    float weight = weights[i];
+                    weights[i] = weights[j];
+                    weights[j] = weight;
+                    i++;
+                    j--;
+                }
+            }
+            /**
+             * The recursion is done on the smaller part, while the bigger one is ordered by the loop.
+             */
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+    }
+}
@@ -1,22 +1,15 @@
 
 package documentclassifier.Metriche;
 
-import java.util.AbstractMap;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.ResourceBundle;
-import java.util.Set;
 
 /**
  * This class calculates the values of the metric TF-IDF (Term Frequency-Inverse Document Frequency),
  * that must be used in the VSM (Vector Space Model) to rank documents of the training set.
  * <p>
- * It implements the interface {@link Comparator}, on elements of type Entry<Map<String,Object>, Map<String, Double>>,
+ * It implements the interface {@link Comparator}, on elements of type Entry<Map<String,Object>, SparseVector>,
  * each one containing information on single documents of the training set.
  * Using the information present in each entry, the Comparator orders the training set's documents depending on the cosine
  * of the angle between each one of them and the query document.
@@ -24,7 +17,7 @@ import java.util.Set;
  * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
  * @see         Comparator
  */
-public class TFIDFComparator implements Comparator<Entry<Map<String,Object>, Map<String, Double>>> {
+public class TFIDFComparator implements Comparator<Entry<Map<String,Object>, SparseVector>> {
     
     /**
      * Method that implements the interface {@link Comparator}, to compare two documents
@@ -44,7 +37,7 @@ public class TFIDFComparator implements Comparator<Entry<Map<String,Object>, Map
      * @return              An integer between these 3 possible values: -1, 0 or 1, representing the ordering
      *                      between the 1st and the 2nd input document.
      */
-    public int compare(Entry<Map<String,Object>, Map<String, Double>> A, Entry<Map<String,Object>, Map<String, Double>> B) {
+    public int compare(Entry<Map<String,Object>, SparseVector> A, Entry<Map<String,Object>, SparseVector> B) {
         
         /**
          * The first thing that is done, is to read the value of the cosine of each of the two documents from the query,
@@ -64,141 +57,84 @@ public class TFIDFComparator implements Comparator<Entry<Map<String,Object>, Map
     }
     
     /**
-     * Static method used to calculate the cosine of the angle between each document of a set (represented by
-     * a vector that for each document's term contains its relative frequency), and a reference document (query).
+     * Static method used to calculate the cosine of the angle between each document of the training set (compiled into
+     * an inverted index), and a reference document (query).
+     * <p>
+     * The 'TF' part of the formula, that is the relative frequency of each term inside each document, has already been calculated during
+     * the histogram's creation phase, everytime an instance of the class {@link Documento} was created, and it is memorized in the postings
+     * of the index. The 'IDF' part of each term is read from the {@link DocumentFrequencyTable} of the index, which is built only once
+     * together with the training set: At query time only the terms of the query need to be weighted.
+     * The terms of the query that are not present in the training set have IDF 0, and they are ignored, since they couldn't in any case
+     * contribute to the scalar product with any document.
+     * <p>
+     * The scalar product between each document and the query is accumulated visiting only the postings of the query's terms, and it is
+     * divided by the norms of the two vectors: The norm of each document of the training set is read from the {@link InvertedIndex.TFIDFWeights}
+     * of the index, calculated only once for all queries. Only the documents with at least one term in common with the query are considered:
+     * For all other documents the cosine is 0.
      * 
-     * @param trainingSet   A set of documents, represented with a list of instances of the class Entry<Map<String,Object>, Map<String, Double>>,
-     *                      whose key is a map {@link String}->{@link Object}, containing information on a document, and whose value is a map
-     *                      {@link String}->{@link Double}, which represents the histogram of terms of the document (after pre-processing).
+     * @param index         The inverted index of the training set.
      * @param query         The histogram of the query document from where all cosines are calculated.
-     *                      It is implemented by a map, that associates keys of type {@link String} to elements of type {@link Double}.
+     *                      It is implemented by a {@link SparseVector}, whose terms are identified by the {@link TermDictionary}.
+     * @return              An array containing, for each document of the index (in the order of their identifiers), the cosine
+     *                      of the angle between it and the query.
      */
-    public static void calculateCosine(LinkedList<Entry<Map<String, Object>, Map<String, Double>>> trainingSet, Map<String, Double> query) {
-        
-        /**
-         * Before calculating all cosines, it is necessary to calculate the TF-IDF value of each term of each histogram of the document set
-         * (training set+query document).
-         * The 'TF' part of the formula, that is the relative frequency of each term inside each document, has already been calculated during
-         * the histogram's creation phase, everytime an instance of the class {@link Documento} was created.
-         * N.B.: The query document must temporarly be part of the training set.
-         */
+    public static double[] calculateCosine(InvertedIndex index, SparseVector query) {
+        return calculateCosine(index, query, 0);
+    }
+
+    /**
+     * This method calculates the cosines like the previous one, but only for the documents of the index whose identifier
+     * is greater than or equal to the one specified, skipping the postings of the other documents.
+     * It is used to calculate the cosines between the documents of the index themselves only once for each pair.
+     *
+     * @param index         The inverted index of the training set.
+     * @param query         The histogram of the query document from where all cosines are calculated.
+     * @param firstDocument The identifier of the first document whose cosine must be calculated.
+     * @return              An array containing, for each document of the index, the cosine of the angle between it and
+     *                      the query: The values of the documents before the first one are not calculated (they are 0).
+     */
+    public static double[] calculateCosine(InvertedIndex index, SparseVector query, int firstDocument) {
         
+        InvertedIndex.TFIDFWeights weights = index.getTFIDFWeights();
+        double[] IDF = weights.getInverseDocumentFrequencies();
+        double[] cosines = new double[index.size()];
         /**
-         * The first thing that is done, is to create an instance of the class 'Entry<Map<String,Object>, Map<String, Double>>',
-         * that represents the query document, in order to temporarly add it to the training set.
+         * The documents that have at least one term in common with the query, in the order they are met.
          */
-        Entry<Map<String,Object>, Map<String, Double>> entryQuery=new AbstractMap.SimpleEntry<Map<String,Object>, Map<String, Double>>(null,query);
-        trainingSet.add(entryQuery);
+        int[] candidates = new int[index.size()];
+        boolean[] isCandidate = new boolean[index.size()];
+        int numberCandidates = 0;
+        InvertedIndex.Postings termPostings;
+        double IDFTerm;
         double TFIDF;
-        /**
-         * A copy of the training set provided in input is created: It will memorize the histograms of each document,
-         * but updated with the values of each term's 'TF-IDF', instead than the relative frequency.
-         * This is necessary to avoid overwriting permanently the original histograms of the training set's documents,
-         * something that would bring wrong results in output, different at each invocation of the classification task.
-         */
-        List<Entry<Map<String,Object>,Map<String,Double>>> copyTrainingSet=new LinkedList<Entry<Map<String, Object>, Map<String, Double>>>();
-        Map<String, Double> currentDocumentHistogram;
-        /**
-         * The map named 'DF' must be used to memorize, as the name suggest, the 'DF' part of each term 'j' in the training set (DFj).
-         * This value is calculated the first time that a certain term is found in one of the histograms of the training set, and from
-         * that point on, the program will just need to access it to get DFj, instead than performing a redundant calculation.
-         */
-        Map<String, Integer> IDF = new HashMap<String, Integer>();
-        Integer absFrequencyCurrentTerm;
-        /**
-         * The variable 'totalNumberDocuments' contains the dimension of the document set (N).
-         */
-        int totalNumberDocuments = trainingSet.size();
-        /**
-         * For each document of the document set...
-         */
-        for(Entry<Map<String,Object>,Map<String,Double>> currentEntry : trainingSet) {
-            
-            /**
-             * A copy of its histogram is created, and this will be modified by substituting, for each term,
-             * the value of relative frequency with the value of TF-IDF.
-             */
-            currentDocumentHistogram=new HashMap<String, Double>();
-            currentDocumentHistogram.putAll(currentEntry.getValue());
-            for (String Token : currentDocumentHistogram.keySet()) {
-                if (IDF.get(Token) == null) {
-                    /**
-                     * The current term (j) has never been met before-->Its Document Frequency (DFj) is not
-                     * yet present in the map-->The number of occurences of this term in the training set
-                     * is counted, divided by its dimension, and memorized in the map.
-                     * In this way, from the next time on, it will be sufficient to access the map (in constant time)
-                     * to know DFj, avoiding unnecessary recalculations.
-                     */
-                    absFrequencyCurrentTerm = 0;
-                    for (int j = 0; j < totalNumberDocuments; j++) {
-                        if (trainingSet.get(j).getValue().get(Token) != null) {
-                            absFrequencyCurrentTerm++;
-                        }
-                    }
-                    IDF.put(Token, totalNumberDocuments / absFrequencyCurrentTerm);
-                }
-                TFIDF = currentDocumentHistogram.get(Token) * Math.log10(IDF.get(Token));
-                currentDocumentHistogram.put(Token, TFIDF);
+        double twoNormQuery = 0.0;
+        for (int j = 0; j < query.size(); j++) {
+            int term = query.getTerm(j);
+            if (term >= IDF.length || IDF[term] == 0.0) {
+                continue;
             }
-            copyTrainingSet.add(new AbstractMap.SimpleEntry<Map<String,Object>,Map<String,Double>>(currentEntry.getKey(),currentDocumentHistogram));
-            if(currentEntry==entryQuery) {
-                entryQuery.setValue(currentDocumentHistogram);
+            IDFTerm = IDF[term];
+            TFIDF = query.getWeight(j) * IDFTerm;
+            twoNormQuery += TFIDF * TFIDF;
+            termPostings = index.getPostings(term);
+            for (int i = (firstDocument > 0) ? termPostings.search(firstDocument) : 0; i < termPostings.size(); i++) {
+                int document = termPostings.getDocument(i);
+                cosines[document] += TFIDF * termPostings.getWeight(i) * IDFTerm;
+                if (!isCandidate[document]) {
+                    isCandidate[document] = true;
+                    candidates[numberCandidates++] = document;
+                }
             }
         }
-        trainingSet.remove(entryQuery);
-        /**
-         * I must decrement the variable containing the total number of documents in the training set,
-         * because I just deleted from it the query, which was temporarly added at the beginning of the method.
-         */
-        totalNumberDocuments--;
-        /**
-         * Calculation of the cosine of each training set's document to the query.
-         */
-        double twoNormQuery = twoNorm(entryQuery.getValue());
-        for (int i = 0; i < totalNumberDocuments; i++) {
-            currentDocumentHistogram = copyTrainingSet.get(i).getValue();
-            double distance=scalarProduct(entryQuery.getValue(), currentDocumentHistogram) / (twoNorm(currentDocumentHistogram) * twoNormQuery);
-            trainingSet.get(i).getKey().put("Distance", distance);
-            trainingSet.get(i).getKey().put("Angle",Math.toDegrees(Math.acos(distance)));
-        }
-    }
-    
-    /**
-     * Method to calculate the scalar product between 2 vectors (of doubles), represented in this case by
-     * two maps {@link String}->{@link Double}.
-     * 
-     * @param A             The 1st vector.
-     * @param B             The 2nd vector.
-     * @return              The result of the scalar product between A and B.
-     */
-    private static double scalarProduct(Map<String, Double> A, Map<String, Double> B) {
-        
-        double product = 0.0;
-        Set<String> intersection = new HashSet<String>();
-        intersection.addAll(A.keySet());
+        twoNormQuery = Math.sqrt(twoNormQuery);
         /**
-         * A and B are intersected, and a new set is created from the result of the operation.
-         * This will be used to perform the actual calculation, because it would be a waste of time taking
-         * into consideration also terms not common between the two vectors, since they give a contribution
-         * of 0 to the final result.
+         * Calculation of the cosine of each candidate document to the query.
          */
-        if (A != B) {
-            intersection.retainAll(B.keySet());
+        for (int i = 0; i < numberCandidates; i++) {
+            int document = candidates[i];
+            double denominator = weights.getTwoNorm(document) * twoNormQuery;
+            cosines[document] = (denominator == 0.0) ? 0.0 : cosines[document] / denominator;
         }
-        for (String token : intersection) {
-            product += (A.get(token) * B.get(token));
-        }
-        return product;
-    }
-    
-    /**
-     * Method to calculate the 2-norm of a vector in input, represented by a map
-     * {@link String}->{@link Double}.
-     * 
-     * @param V             Input vector.
-     * @return              2-norm of the input vector.
-     */
-    private static double twoNorm(Map<String, Double> V) {
-        return Math.sqrt(scalarProduct(V, V));
+        return cosines;
     }
 }
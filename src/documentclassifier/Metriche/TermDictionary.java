@@ -0,0 +1,103 @@
+package documentclassifier.Metriche;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents the global dictionary of the terms met by the application, which associates to
+ * each term a unique integer identifier.
+ * <p>
+ * The histograms of the documents are represented with the identifiers of their terms ({@link SparseVector}),
+ * instead than with the strings themselves: In this way they occupy less memory, and the metrics can compare
+ * two documents without calculating the hash code of any string.
+ * The identifiers are assigned in order starting from 0, and they never change during the execution of the program.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public final class TermDictionary {
+
+    /**
+     * The only instance of the dictionary, shared by all documents.
+     */
+    private static final TermDictionary dictionary = new TermDictionary();
+    /**
+     * Map that associates each term to its identifier.
+     * It can be read concurrently by more threads, while the insertion of new terms is serialized.
+     */
+    private final ConcurrentHashMap<String, Integer> identifiers;
+    /**
+     * The terms of the dictionary, in the order of their identifiers.
+     */
+    private final List<String> terms;
+
+    private TermDictionary() {
+        identifiers = new ConcurrentHashMap<String, Integer>();
+        terms = new ArrayList<String>();
+    }
+
+    /**
+     * This method returns the global dictionary of terms.
+     *
+     * @return                  The instance of the dictionary shared by the whole application.
+     */
+    public static TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * This method returns the identifier of a term, adding it to the dictionary if it's the first time
+     * that it is met.
+     *
+     * @param term              The term whose identifier must be returned.
+     * @return                  The identifier of the term.
+     */
+    public int getIdentifier(String term) {
+        Integer identifier = identifiers.get(term);
+        if (identifier != null) {
+            return identifier;
+        }
+        synchronized (this) {
+            identifier = identifiers.get(term);
+            if (identifier == null) {
+                identifier = terms.size();
+                terms.add(term);
+                identifiers.put(term, identifier);
+            }
+            return identifier;
+        }
+    }
+
+    /**
+     * This method returns the identifier of a term, without adding it to the dictionary if it has never been met.
+     * It is used for the query documents: A term that doesn't belong to any document of the training set can't match
+     * any of them, so it's useless to memorize it, and the dictionary doesn't grow with each document classified.
+     *
+     * @param term              The term whose identifier must be returned.
+     * @return                  The identifier of the term, or -1 if the term is not present in the dictionary.
+     */
+    public int findIdentifier(String term) {
+        Integer identifier = identifiers.get(term);
+        return (identifier != null) ? identifier : -1;
+    }
+
+    /**
+     * This method returns the term corresponding to an identifier.
+     *
+     * @param identifier        The identifier of the term.
+     * @return                  The term corresponding to the identifier.
+     */
+    public synchronized String getTerm(int identifier) {
+        return terms.get(identifier);
+    }
+
+    /**
+     * This method returns the number of terms inside the dictionary, which is also the upper bound
+     * (excluded) of the identifiers assigned until now.
+     *
+     * @return                  The number of terms inside the dictionary.
+     */
+    public synchronized int size() {
+        return terms.size();
+    }
+}
@@ -0,0 +1,108 @@
+package documentclassifier.Metriche;
+
+/**
+ * This class selects, from the array with the values of a metric for each document of the training set, the K
+ * documents nearest to the query, without ordering the whole training set.
+ * <p>
+ * The selection uses a binary heap of (at most) K elements, which has at its root the worst of the documents selected
+ * until now: Each other document is compared only with it, so the cost is O(N log K) instead than O(N log N), and
+ * no object is allocated for the documents that are discarded.
+ * <p>
+ * Two documents with the same value of the metric are ordered on their identifier, in ascending way: This is the same
+ * order that a stable sort of the whole training set (like {@link java.util.Collections#sort Collections.sort}) would
+ * give them, so the K-NN chooses the same documents in both cases.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public class TopKSelector {
+
+    /**
+     * This method returns the identifiers of the K documents with the best value of the metric.
+     *
+     * @param values            The value of the metric for each document, indexed by the identifier of the document.
+     * @param K                 The number of documents to select. If it is greater than the number of documents, all
+     *                          documents are returned (ordered).
+     * @param ascending         True if the best values are the lowest ones (like for a distance), false if they are the
+     *                          highest ones (like for the cosine of an angle).
+     * @return                  The identifiers of the selected documents, ordered from the best to the worst.
+     */
+    public static int[] selectTopK(double[] values, int K, boolean ascending) {
+
+        K = Math.max(0, Math.min(K, values.length));
+        /**
+         * The heap contains the identifiers of the selected documents; its root (position 0) is the worst of them.
+         */
+        int[] heap = new int[K];
+        int size = 0;
+        for (int document = 0; document < values.length; document++) {
+            if (size < K) {
+                heap[size] = document;
+                siftUp(heap, size, values, ascending);
+                size++;
+            } else if (K > 0 && isBetter(document, heap[0], values, ascending)) {
+                heap[0] = document;
+                siftDown(heap, size, values, ascending);
+            }
+        }
+        /**
+         * The heap is emptied extracting each time the worst element, and putting it at the end of the result.
+         */
+        int[] result = new int[K];
+        for (int i = K - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, values, ascending);
+        }
+        return result;
+    }
+
+    /**
+     * This method indicates if a document comes before another one in the ranking.
+     * The values NaN are considered worse than any other value.
+     */
+    private static boolean isBetter(int documentA, int documentB, double[] values, boolean ascending) {
+        double valueA = values[documentA];
+        double valueB = values[documentB];
+        int comparison = ascending ? Double.compare(valueA, valueB) : Double.compare(valueB, valueA);
+        if (Double.isNaN(valueA) != Double.isNaN(valueB)) {
+            comparison = Double.isNaN(valueA) ? 1 : -1;
+        }
+        if (comparison == 0) {
+            return documentA < documentB;
+        }
+        return comparison < 0;
+    }
+
+    private static void siftUp(int[] heap, int position, double[] values, boolean ascending) {
+        int document = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isBetter(heap[parent], document, values, ascending)) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = document;
+    }
+
+    private static void siftDown(int[] heap, int size, double[] values, boolean ascending) {
+        if (size == 0) {
+            return;
+        }
+        int document = heap[0];
+        int position = 0;
+        while (2 * position + 1 < size) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && isBetter(heap[child], heap[child + 1], values, ascending)) {
+                child++;
+            }
+            if (!isBetter(document, heap[child], values, ascending)) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = document;
+    }
+}
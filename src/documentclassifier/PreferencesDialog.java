@@ -3,6 +3,7 @@ package documentclassifier;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.io.File;
+import java.nio.charset.Charset;
 import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.List;
@@ -18,7 +19,7 @@ import org.jdesktop.application.FrameView;
 
 /**
  * This class represents the JDialog used to modify the program's preferences, such as
- * - The scraper used to extract the features (terms) from documents.
+ * - The scraper used to extract the features (terms) from documents, and the charset of the documents that don't declare it.
  * - The metric used to calculate the distance between documents.
  * - Etc...
  * 
@@ -74,6 +75,8 @@ public class PreferencesDialog extends javax.swing.JDialog {
         panelPreprocessing = new javax.swing.JPanel();
         labelScraper = new javax.swing.JLabel();
         comboBoxScraper = new javax.swing.JComboBox();
+        labelCharset = new javax.swing.JLabel();
+        comboBoxCharset = new javax.swing.JComboBox();
         separatorScraperPreprocessing = new javax.swing.JSeparator();
         labelPreprocessing = new javax.swing.JLabel();
         checkBoxStopWords = new javax.swing.JCheckBox();
@@ -96,13 +99,16 @@ public class PreferencesDialog extends javax.swing.JDialog {
         labelKFoldTitle = new javax.swing.JLabel();
         separatorKFoldLogging = new javax.swing.JSeparator();
         checkBoxStratified = new javax.swing.JCheckBox();
-        checkBoxVisualizeListDocuments = new javax.swing.JCheckBox();
+        checkBoxSimilarityMatrix = new javax.swing.JCheckBox();
+        checkBoxLeaveOneOut = new javax.swing.JCheckBox();
         labelKFoldValue = new javax.swing.JLabel();
         separatorKNNMaximumKFold = new javax.swing.JSeparator();
         labelKNNMaximumTitle = new javax.swing.JLabel();
         labelKNNMaximumValue = new javax.swing.JLabel();
         sliderKNNMaximum = new javax.swing.JSlider();
         checkBoxVisualizeCurrentDocument = new javax.swing.JCheckBox();
+        checkBoxVisualizeClassifications = new javax.swing.JCheckBox();
+        checkBoxKeepTexts = new javax.swing.JCheckBox();
         labelLogFile = new javax.swing.JLabel();
         fieldLogFile = new javax.swing.JTextField();
         buttonBrowseLogFile = new javax.swing.JButton();
@@ -182,6 +188,13 @@ public class PreferencesDialog extends javax.swing.JDialog {
         comboBoxScraper.setToolTipText(resourceMap.getString("comboBoxScraper.toolTipText")); // NOI18N
         comboBoxScraper.setName("comboBoxScraper"); // NOI18N
 
+        labelCharset.setLabelFor(comboBoxCharset);
+        labelCharset.setText(resourceMap.getString("labelCharset.text")); // NOI18N
+        labelCharset.setName("labelCharset"); // NOI18N
+
+        comboBoxCharset.setToolTipText(resourceMap.getString("comboBoxCharset.toolTipText")); // NOI18N
+        comboBoxCharset.setName("comboBoxCharset"); // NOI18N
+
         separatorScraperPreprocessing.setName("separatorScraperPreprocessing"); // NOI18N
 
         labelPreprocessing.setText(resourceMap.getString("labelPreprocessing.text")); // NOI18N
@@ -228,7 +241,11 @@ public class PreferencesDialog extends javax.swing.JDialog {
                     .addGroup(panelPreprocessingLayout.createSequentialGroup()
                         .addComponent(labelScraper)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                        .addComponent(comboBoxScraper, 0, 524, Short.MAX_VALUE))
+                        .addComponent(comboBoxScraper, 0, 334, Short.MAX_VALUE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                        .addComponent(labelCharset)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(comboBoxCharset, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE))
                     .addComponent(labelPreprocessing)
                     .addGroup(panelPreprocessingLayout.createSequentialGroup()
                         .addGap(12, 12, 12)
@@ -255,7 +272,9 @@ public class PreferencesDialog extends javax.swing.JDialog {
                 .addContainerGap()
                 .addGroup(panelPreprocessingLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(labelScraper)
-                    .addComponent(comboBoxScraper, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                    .addComponent(comboBoxScraper, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(labelCharset)
+                    .addComponent(comboBoxCharset, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addComponent(separatorScraperPreprocessing, javax.swing.GroupLayout.PREFERRED_SIZE, 10, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -372,9 +391,14 @@ public class PreferencesDialog extends javax.swing.JDialog {
         checkBoxStratified.setName("checkBoxStratified"); // NOI18N
         checkBoxStratified.addChangeListener(formListener);
 
-        checkBoxVisualizeListDocuments.setText(resourceMap.getString("checkBoxVisualizeListDocuments.text")); // NOI18N
-        checkBoxVisualizeListDocuments.setToolTipText(resourceMap.getString("checkBoxVisualizeListDocuments.toolTipText")); // NOI18N
-        checkBoxVisualizeListDocuments.setName("checkBoxVisualizeListDocuments"); // NOI18N
+        checkBoxSimilarityMatrix.setText(resourceMap.getString("checkBoxSimilarityMatrix.text")); // NOI18N
+        checkBoxSimilarityMatrix.setToolTipText(resourceMap.getString("checkBoxSimilarityMatrix.toolTipText")); // NOI18N
+        checkBoxSimilarityMatrix.setName("checkBoxSimilarityMatrix"); // NOI18N
+
+        checkBoxLeaveOneOut.setText(resourceMap.getString("checkBoxLeaveOneOut.text")); // NOI18N
+        checkBoxLeaveOneOut.setToolTipText(resourceMap.getString("checkBoxLeaveOneOut.toolTipText")); // NOI18N
+        checkBoxLeaveOneOut.setName("checkBoxLeaveOneOut"); // NOI18N
+        checkBoxLeaveOneOut.addItemListener(formListener);
 
         labelKFoldValue.setName("labelKFoldValue"); // NOI18N
 
@@ -401,6 +425,14 @@ public class PreferencesDialog extends javax.swing.JDialog {
         checkBoxVisualizeCurrentDocument.setToolTipText(resourceMap.getString("checkBoxVisualizeCurrentDocument.toolTipText")); // NOI18N
         checkBoxVisualizeCurrentDocument.setName("checkBoxVisualizeCurrentDocument"); // NOI18N
 
+        checkBoxVisualizeClassifications.setText(resourceMap.getString("checkBoxVisualizeClassifications.text")); // NOI18N
+        checkBoxVisualizeClassifications.setToolTipText(resourceMap.getString("checkBoxVisualizeClassifications.toolTipText")); // NOI18N
+        checkBoxVisualizeClassifications.setName("checkBoxVisualizeClassifications"); // NOI18N
+
+        checkBoxKeepTexts.setText(resourceMap.getString("checkBoxKeepTexts.text")); // NOI18N
+        checkBoxKeepTexts.setToolTipText(resourceMap.getString("checkBoxKeepTexts.toolTipText")); // NOI18N
+        checkBoxKeepTexts.setName("checkBoxKeepTexts"); // NOI18N
+
         labelLogFile.setText(resourceMap.getString("labelLogFile.text")); // NOI18N
         labelLogFile.setName("labelLogFile"); // NOI18N
 
@@ -434,7 +466,11 @@ public class PreferencesDialog extends javax.swing.JDialog {
                     .addComponent(separatorLogFileVisualize, javax.swing.GroupLayout.DEFAULT_SIZE, 589, Short.MAX_VALUE)
                     .addGroup(javax.swing.GroupLayout.Alignment.LEADING, panelValidationLayout.createSequentialGroup()
                         .addGap(12, 12, 12)
-                        .addComponent(checkBoxStratified))
+                        .addComponent(checkBoxStratified)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(checkBoxSimilarityMatrix)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(checkBoxLeaveOneOut))
                     .addGroup(javax.swing.GroupLayout.Alignment.LEADING, panelValidationLayout.createSequentialGroup()
                         .addComponent(labelKFoldTitle)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -460,7 +496,8 @@ public class PreferencesDialog extends javax.swing.JDialog {
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                         .addComponent(checkBoxOverwriteLogFile))
                     .addComponent(checkBoxVisualizeCurrentDocument, javax.swing.GroupLayout.Alignment.LEADING)
-                    .addComponent(checkBoxVisualizeListDocuments, javax.swing.GroupLayout.Alignment.LEADING))
+                    .addComponent(checkBoxVisualizeClassifications, javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(checkBoxKeepTexts, javax.swing.GroupLayout.Alignment.LEADING))
                 .addContainerGap())
         );
         panelValidationLayout.setVerticalGroup(
@@ -483,7 +520,10 @@ public class PreferencesDialog extends javax.swing.JDialog {
                                 .addComponent(labelKFoldValue))
                             .addComponent(sliderKFold, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                        .addComponent(checkBoxStratified)
+                        .addGroup(panelValidationLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                            .addComponent(checkBoxStratified)
+                            .addComponent(checkBoxSimilarityMatrix)
+                            .addComponent(checkBoxLeaveOneOut))
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                         .addComponent(separatorKFoldLogging, javax.swing.GroupLayout.PREFERRED_SIZE, 10, javax.swing.GroupLayout.PREFERRED_SIZE)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
@@ -500,7 +540,9 @@ public class PreferencesDialog extends javax.swing.JDialog {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(checkBoxVisualizeCurrentDocument)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                .addComponent(checkBoxVisualizeListDocuments)
+                .addComponent(checkBoxVisualizeClassifications)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(checkBoxKeepTexts)
                 .addContainerGap(52, Short.MAX_VALUE))
         );
 
@@ -572,6 +614,9 @@ public class PreferencesDialog extends javax.swing.JDialog {
             if (evt.getSource() == checkBoxLogging) {
                 PreferencesDialog.this.checkBoxLoggingItemStateChanged(evt);
             }
+            else if (evt.getSource() == checkBoxLeaveOneOut) {
+                PreferencesDialog.this.checkBoxLeaveOneOutItemStateChanged(evt);
+            }
         }
 
         public void stateChanged(javax.swing.event.ChangeEvent evt) {
@@ -665,6 +710,15 @@ public class PreferencesDialog extends javax.swing.JDialog {
                 }
             }
 
+            //The charset of the documents that don't declare it.
+            String charsetName = application.getCharset(reset);
+            if (comboBoxCharset.getItemCount() == 0) {
+                for (String currentCharsetName : Charset.availableCharsets().keySet()) {
+                    comboBoxCharset.addItem(currentCharsetName);
+                }
+            }
+            comboBoxCharset.setSelectedItem(Charset.forName(charsetName).name());
+
             //If removal of stopwords from documents is enabled or not.
             checkBoxStopWords.setSelected(application.isRemovalStopWords(reset));
             fieldStopWords.setEnabled(checkBoxStopWords.isSelected());
@@ -712,6 +766,12 @@ public class PreferencesDialog extends javax.swing.JDialog {
             //If partitioning for the K-Fold cross validation must be stratified or not.
             checkBoxStratified.setSelected(application.isStratified(reset));
 
+            //If the K-Fold cross validation must use the similarity matrix of the training set or not.
+            checkBoxSimilarityMatrix.setSelected(application.isSimilarityMatrix(reset));
+
+            //If the validation must be leave-one-out instead of K-Fold.
+            checkBoxLeaveOneOut.setSelected(application.isLeaveOneOut(reset));
+
             //If logging during the validation phase is enabled or not.
             checkBoxLogging.setSelected(application.isLogging(reset));
 
@@ -725,8 +785,11 @@ public class PreferencesDialog extends javax.swing.JDialog {
             //If the current document must be visualized during the validation phase.
             checkBoxVisualizeCurrentDocument.setSelected(application.isVisualizeCurrentDocument(reset));
 
-            //If the list of document of the training set, ranked to the query, must be visualized or not during the validation phase.
-            checkBoxVisualizeListDocuments.setSelected(application.isVisualizeListRankedDocuments(reset));
+            //If the outcome of each document must be visualized during the validation phase.
+            checkBoxVisualizeClassifications.setSelected(application.isVisualizeClassifications(reset));
+
+            //If the texts of the documents of the training set must be kept in memory.
+            checkBoxKeepTexts.setSelected(application.isKeepTexts(reset));
 
             /**
              * The FocusListeners are re-enabled.
@@ -757,6 +820,9 @@ public class PreferencesDialog extends javax.swing.JDialog {
         currentKey = MapDefaultPreferences.SCRAPER;
         updatePreference(currentKey, mapPreferences.get(currentKey), comboBoxScraper.getSelectedItem().getClass().getName());
 
+        currentKey = MapDefaultPreferences.CHARSET;
+        updatePreference(currentKey, mapPreferences.get(currentKey), (String) comboBoxCharset.getSelectedItem());
+
         currentKey = MapDefaultPreferences.isREMOVALSTOPWORDS;
         updatePreference(currentKey, mapPreferences.get(currentKey), String.valueOf(checkBoxStopWords.isSelected()));
 
@@ -791,6 +857,12 @@ public class PreferencesDialog extends javax.swing.JDialog {
         currentKey = MapDefaultPreferences.isSTRATIFIED;
         updatePreference(currentKey, mapPreferences.get(currentKey), String.valueOf(checkBoxStratified.isSelected()));
 
+        currentKey = MapDefaultPreferences.isSIMILARITYMATRIX;
+        updatePreference(currentKey, mapPreferences.get(currentKey), String.valueOf(checkBoxSimilarityMatrix.isSelected()));
+
+        currentKey = MapDefaultPreferences.isLEAVEONEOUT;
+        updatePreference(currentKey, mapPreferences.get(currentKey), String.valueOf(checkBoxLeaveOneOut.isSelected()));
+
         currentKey = MapDefaultPreferences.isLOGGING;
         updatePreference(currentKey, mapPreferences.get(currentKey), String.valueOf(checkBoxLogging.isSelected()));
 
@@ -803,8 +875,11 @@ public class PreferencesDialog extends javax.swing.JDialog {
         currentKey = MapDefaultPreferences.isVISUALIZECURRENTDOCUMENT;
         updatePreference(currentKey, mapPreferences.get(currentKey), String.valueOf(checkBoxVisualizeCurrentDocument.isSelected()));
 
-        currentKey = MapDefaultPreferences.isVISUALIZELISTRANKEDDOCUMENTS;
-        updatePreference(currentKey, mapPreferences.get(currentKey), String.valueOf(checkBoxVisualizeListDocuments.isSelected()));
+        currentKey = MapDefaultPreferences.isVISUALIZECLASSIFICATIONS;
+        updatePreference(currentKey, mapPreferences.get(currentKey), String.valueOf(checkBoxVisualizeClassifications.isSelected()));
+
+        currentKey = MapDefaultPreferences.isKEEPTEXTS;
+        updatePreference(currentKey, mapPreferences.get(currentKey), String.valueOf(checkBoxKeepTexts.isSelected()));
 
         //Once the new values of the modified preferences have been saved, the JDialog is closed.
         dispose();
@@ -994,6 +1069,25 @@ private void checkBoxLoggingItemStateChanged(java.awt.event.ItemEvent evt) {//GE
     fieldLogFile.setEnabled(isLoggingEnabled);
     checkBoxOverwriteLogFile.setEnabled(isLoggingEnabled);
 }//GEN-LAST:event_checkBoxLoggingItemStateChanged
+
+    /**
+     * This method is called each time the user enables or disables the leave-one-out validation: In this case the
+     * training set is not partitioned, so the value of K-Fold and the stratified sampling are not used, and the
+     * training set of each query contains all the other documents.
+     * 
+     * @param evt
+     */
+private void checkBoxLeaveOneOutItemStateChanged(java.awt.event.ItemEvent evt) {//GEN-FIRST:event_checkBoxLeaveOneOutItemStateChanged
+
+    boolean isLeaveOneOut = checkBoxLeaveOneOut.isSelected();
+    sliderKFold.setEnabled(!isLeaveOneOut);
+    checkBoxStratified.setEnabled(!isLeaveOneOut);
+    if (isLeaveOneOut) {
+        sliderKNNMaximum.setMaximum(Math.max(sliderKNNMaximum.getMinimum(), application.getTrainingSetSize() - 1));
+    } else {
+        fixKFold(null);
+    }
+}//GEN-LAST:event_checkBoxLeaveOneOutItemStateChanged
     // Variables declaration - do not modify//GEN-BEGIN:variables
     javax.swing.JRadioButton buttonBhattacharrya;
     javax.swing.JButton buttonBrowseLogFile;
@@ -1003,19 +1097,24 @@ private void checkBoxLoggingItemStateChanged(java.awt.event.ItemEvent evt) {//GE
     javax.swing.JButton buttonOK;
     javax.swing.JButton buttonReset;
     javax.swing.JRadioButton buttonTFIDF;
+    javax.swing.JCheckBox checkBoxKeepTexts;
+    javax.swing.JCheckBox checkBoxLeaveOneOut;
     javax.swing.JCheckBox checkBoxLogging;
     javax.swing.JCheckBox checkBoxOverwriteLogFile;
+    javax.swing.JCheckBox checkBoxSimilarityMatrix;
     javax.swing.JCheckBox checkBoxStemming;
     javax.swing.JCheckBox checkBoxStopWords;
     javax.swing.JCheckBox checkBoxStratified;
+    javax.swing.JCheckBox checkBoxVisualizeClassifications;
     javax.swing.JCheckBox checkBoxVisualizeCurrentDocument;
-    javax.swing.JCheckBox checkBoxVisualizeListDocuments;
+    javax.swing.JComboBox comboBoxCharset;
     javax.swing.JComboBox comboBoxScraper;
     javax.swing.JComboBox comboBoxStemmers;
     javax.swing.JTextField fieldLogFile;
     javax.swing.JTextField fieldStopWords;
     javax.swing.JTextField fieldTrainingSetDirectory;
     javax.swing.ButtonGroup groupMetrics;
+    javax.swing.JLabel labelCharset;
     javax.swing.JLabel labelCurrentStemmer;
     javax.swing.JLabel labelKFoldTitle;
     javax.swing.JLabel labelKFoldValue;
@@ -4,6 +4,10 @@ package documentclassifier.Scrapers;
 import ansascraper.*;
 import documentclassifier.DocumentClassifierView;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 
 /**
  * Scraper that is able to get the title and text from web pages of the ANSA's web site (www.ansa.it)
@@ -11,12 +15,22 @@ import java.io.InputStream;
  * 
  * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
  */
-public class ANSAScraper implements Scraper {
+public class ANSAScraper implements ChannelScraper {
     
-    public String[] getDocument(InputStream IS) {
+    private volatile int bufferSize = DEFAULTBUFFERSIZE;
+    /**
+     * The reader, the lexical analyzer and the syntax analyzer of each thread, reused for all the documents it reads.
+     */
+    private final ThreadLocal<ReusableParser> parsers = new ThreadLocal<ReusableParser>();
+    
+    /**
+     * The line separator that divides the title from the text, inside the value returned by the syntax analyzer.
+     */
+    private static final String LINESEPARATOR = System.getProperty("line.separator");
+    
+    public String[] getDocument(InputStream IS, Charset declaredCharset, Charset defaultCharset) {
         try {
-            parser myparser = new parser(new Yylex(IS));
-            String[] titleText = ((String) myparser.parse().value).split(System.getProperty("line.separator"), 2);
+            String[] titleText = ((String) parse(Channels.newChannel(IS), declaredCharset, defaultCharset, null)).split(LINESEPARATOR, 2);
             return titleText;
         } catch (Exception ex) {
             DocumentClassifierView.showErrorMessage(ex.toString());
@@ -24,9 +38,81 @@ public class ANSAScraper implements Scraper {
         return null;
     }
     
+    /**
+     * The lexical analyzer passes the title and the text to the handler while it reads them, and the syntax analyzer
+     * only checks that the page contains a news.
+     */
+    public void getDocument(InputStream IS, Charset declaredCharset, Charset defaultCharset, TextHandler handler) throws Exception {
+        parse(Channels.newChannel(IS), declaredCharset, defaultCharset, handler);
+    }
+    
+    public void getDocument(FileChannel channel, Charset defaultCharset, TextHandler handler) throws Exception {
+        parse(channel, null, defaultCharset, handler);
+    }
+    
+    /**
+     * This method reads a document with the lexical and syntax analyzers of the current thread, which are reset and reused
+     * for all the documents it reads: They are created again only if the dimension of the buffers has been changed.
+     * 
+     * @param   channel         The channel from where reading the document.
+     * @param   declaredCharset The charset declared outside the document, or null if it is not known.
+     * @param   defaultCharset  The charset used if the document doesn't declare any charset.
+     * @param   handler         The handler that receives the title and the text of the document, or null if they must be
+     *                          returned by the syntax analyzer.
+     * @return                  The value returned by the syntax analyzer.
+     * @throws  Exception       If the document can't be read.
+     */
+    private Object parse(ReadableByteChannel channel, Charset declaredCharset, Charset defaultCharset, TextHandler handler) throws Exception {
+        ReusableParser reusableParser = parsers.get();
+        if (reusableParser == null || reusableParser.bufferSize != bufferSize) {
+            reusableParser = new ReusableParser(bufferSize);
+            parsers.set(reusableParser);
+        }
+        reusableParser.reader.reset(channel, declaredCharset, defaultCharset);
+        try {
+            reusableParser.lexer.reset(reusableParser.bufferedReader, reusableParser.bufferSize);
+            reusableParser.lexer.setTextHandler(handler);
+            return reusableParser.parser.parse().value;
+        } finally {
+            reusableParser.lexer.setTextHandler(null);
+            reusableParser.reader.close();
+        }
+    }
+    
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("The dimension of the buffers must be positive");
+        }
+        this.bufferSize = bufferSize;
+    }
+    
     @Override
     public String toString() {
         return "ANSA.it";
     }
     
+    /**
+     * The objects used by a thread to read the documents.
+     */
+    private static class ReusableParser {
+        
+        private final int bufferSize;
+        private final ChannelReader reader;
+        private final java.io.BufferedReader bufferedReader;
+        private final Yylex lexer;
+        private final parser parser;
+        
+        private ReusableParser(int bufferSize) {
+            this.bufferSize = bufferSize;
+            reader = new ChannelReader(bufferSize);
+            /**
+             * The lexical analyzer needs a BufferedReader: With a buffer of a single character, it passes all the readings
+             * directly to the reader, without another level of buffering.
+             */
+            bufferedReader = new java.io.BufferedReader(reader, 1);
+            lexer = new Yylex(bufferedReader);
+            parser = new parser(lexer);
+        }
+    }
+    
 }
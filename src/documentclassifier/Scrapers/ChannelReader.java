@@ -0,0 +1,162 @@
+package documentclassifier.Scrapers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader that decodes the characters of a document reading its bytes directly from a channel (usually a {@link FileChannel}),
+ * and that can be reused for many documents: The buffers are created only once, the decoder is created again only when the
+ * charset changes, and the method {@link #reset reset} starts the reading of a new document.
+ * <p>
+ * The charset of each document is determined by {@link DocumentCharset}, from the first block of its bytes.
+ * The small files are read a block at a time inside a direct buffer, while the files bigger than a threshold are mapped
+ * in memory and decoded directly, without copying their bytes.
+ * The bytes that don't represent a valid character are replaced, like an {@link java.io.InputStreamReader} does.
+ * <p>
+ * An instance of this class can't be shared between threads.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class ChannelReader extends Reader {
+
+    /**
+     * The files bigger than this dimension (in bytes) are mapped in memory instead of being read a block at a time.
+     */
+    private static final long MAPPINGTHRESHOLD = 1 << 20;
+    private Charset charset;
+    private CharsetDecoder decoder;
+    private final ByteBuffer readBuffer;
+    private final CharBuffer characters;
+    /**
+     * The bytes not yet decoded: The buffer where the blocks are read, or the file mapped in memory.
+     */
+    private ByteBuffer bytes;
+    private ReadableByteChannel channel;
+    private boolean isEndOfInput;
+    private boolean isFlushed;
+
+    /**
+     * This constructor creates a new reader.
+     *
+     * @param bufferSize        The dimension (in bytes and in characters) of the buffers used to read and decode the documents:
+     *                          The buffer of the bytes contains at least the part of the document where its charset is declared.
+     */
+    public ChannelReader(int bufferSize) {
+        readBuffer = ByteBuffer.allocateDirect(Math.max(bufferSize, DocumentCharset.PRESCANLENGTH));
+        characters = CharBuffer.allocate(bufferSize);
+        bytes = readBuffer;
+        isEndOfInput = true;
+        isFlushed = true;
+    }
+
+    /**
+     * This method starts the reading of a new document, from its beginning.
+     * The channel is not closed by this reader.
+     *
+     * @param channel           The channel of the document to read: If it is a FileChannel, the file can be mapped in memory.
+     * @param declaredCharset   The charset declared outside the document, or null if it is not known.
+     * @param defaultCharset    The charset used if the document doesn't declare any charset.
+     * @throws IOException      If the first block of the document can't be read, or the file can't be mapped in memory.
+     */
+    public void reset(ReadableByteChannel channel, Charset declaredCharset, Charset defaultCharset) throws IOException {
+        characters.clear();
+        characters.flip();
+        isFlushed = false;
+        long position = 0;
+        long size = 0;
+        if (channel instanceof FileChannel) {
+            position = ((FileChannel) channel).position();
+            size = ((FileChannel) channel).size() - position;
+        }
+        if (size > MAPPINGTHRESHOLD && size <= Integer.MAX_VALUE) {
+            bytes = ((FileChannel) channel).map(FileChannel.MapMode.READ_ONLY, position, size);
+            this.channel = null;
+            isEndOfInput = true;
+        } else {
+            /**
+             * The first block is read completely, so that the declaration of the charset can be searched inside it.
+             */
+            readBuffer.clear();
+            this.channel = channel;
+            isEndOfInput = false;
+            while (readBuffer.hasRemaining() && !isEndOfInput) {
+                isEndOfInput = (channel.read(readBuffer) == -1);
+            }
+            readBuffer.flip();
+            bytes = readBuffer;
+        }
+        Charset documentCharset = DocumentCharset.detect(bytes, declaredCharset, defaultCharset);
+        if (!documentCharset.equals(charset)) {
+            charset = documentCharset;
+            decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        } else {
+            decoder.reset();
+        }
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!characters.hasRemaining() && !decode()) {
+            return -1;
+        }
+        int read = Math.min(length, characters.remaining());
+        characters.get(buffer, offset, read);
+        return read;
+    }
+
+    /**
+     * This method decodes the next block of characters of the document, reading new bytes from the channel when the ones
+     * already read are finished.
+     *
+     * @return                  True if at least a character has been decoded, false if the document is finished.
+     */
+    private boolean decode() throws IOException {
+        characters.clear();
+        while (characters.position() == 0 && !isFlushed) {
+            CoderResult result = decoder.decode(bytes, characters, isEndOfInput);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (isEndOfInput) {
+                isFlushed = decoder.flush(characters).isUnderflow();
+            } else {
+                /**
+                 * The bytes of an incomplete character remain at the beginning of the buffer, before the ones read now.
+                 */
+                readBuffer.compact();
+                isEndOfInput = (channel.read(readBuffer) == -1);
+                readBuffer.flip();
+            }
+        }
+        characters.flip();
+        return characters.hasRemaining();
+    }
+
+    /**
+     * The channel is not closed, because it belongs to whom has called the method {@link #reset reset}: Only the references
+     * to the document are released.
+     */
+    @Override
+    public void close() {
+        channel = null;
+        bytes = readBuffer;
+        readBuffer.clear();
+        readBuffer.flip();
+        isEndOfInput = true;
+        isFlushed = true;
+    }
+}
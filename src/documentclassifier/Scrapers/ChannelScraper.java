@@ -0,0 +1,39 @@
+package documentclassifier.Scrapers;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Interface implemented by the streaming scrapers that are also able to read a document directly from the channel of its file,
+ * reusing for all the documents read by the same thread the objects needed to read them (buffers, lexical and syntax analyzers).
+ * In this way the cost of reading a small document is not dominated by the creation of these objects.
+ * 
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public interface ChannelScraper extends StreamingScraper {
+    
+    /**
+     * The default dimension (in bytes and in characters) of the buffers used to read the documents.
+     */
+    public static final int DEFAULTBUFFERSIZE = 1 << 14;
+    
+    /**
+     * Method that reads a document from the channel of its file, and passes its title and (a piece at a time) its text to
+     * the handler, like the method {@link StreamingScraper#getDocument(java.io.InputStream, Charset, Charset, TextHandler) getDocument}.
+     * The channel is not closed.
+     * 
+     * @param   channel         The channel of the file from where reading a document.
+     * @param   defaultCharset  The charset used if the document doesn't declare any charset.
+     * @param   handler         The handler that receives the title and the text of the document.
+     * @throws  Exception       If the document can't be read.
+     */
+    public void getDocument(FileChannel channel, Charset defaultCharset, TextHandler handler) throws Exception;
+    
+    /**
+     * Method that sets the dimension of the buffers used to read the documents from now on.
+     * 
+     * @param   bufferSize      The dimension (in bytes and in characters) of the buffers.
+     */
+    public void setBufferSize(int bufferSize);
+    
+}
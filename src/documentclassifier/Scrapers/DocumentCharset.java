@@ -0,0 +1,143 @@
+package documentclassifier.Scrapers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+
+/**
+ * This class determines the charset with which the bytes of a document must be decoded, so that the same document is always
+ * read in the same way, independently from the charset of the platform where the application is executed.
+ * <p>
+ * The charset is chosen in this order: The one indicated by the byte order mark at the beginning of the document (if present),
+ * the one declared outside the document (for example in the header Content-Type of the HTTP response), the one declared inside
+ * the document by a tag &lt;meta&gt; in its first {@value #PRESCANLENGTH} bytes, and finally a default charset, chosen by the user.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public final class DocumentCharset {
+
+    /**
+     * The charset used when no other charset is specified by the user: The one that HTTP assigns to the text documents
+     * which don't declare their charset.
+     */
+    public static final Charset DEFAULT = Charset.forName("ISO-8859-1");
+    /**
+     * The number of bytes at the beginning of the document where the tag &lt;meta&gt; declaring its charset is searched.
+     */
+    public static final int PRESCANLENGTH = 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private DocumentCharset() {
+    }
+
+    /**
+     * This method returns the charset declared by the value of a header Content-Type (for example "text/html; charset=UTF-8").
+     *
+     * @param contentType       The value of the header, or null if it is not available.
+     * @return                  The declared charset, or null if it is not declared or it is not supported.
+     */
+    public static Charset fromContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int start = contentType.toLowerCase().indexOf("charset=");
+        if (start == -1) {
+            return null;
+        }
+        return forName(contentType, start + "charset=".length());
+    }
+
+    /**
+     * This method determines the charset of a document, from the first bytes of it.
+     * If the document begins with a byte order mark, the position of the buffer is moved after it.
+     *
+     * @param bytes             The first bytes of the document, from its position to its limit: They are not modified.
+     * @param declaredCharset   The charset declared outside the document, or null if it is not known.
+     * @param defaultCharset    The charset used if the document doesn't declare any charset.
+     * @return                  The charset with which the document must be decoded.
+     */
+    public static Charset detect(ByteBuffer bytes, Charset declaredCharset, Charset defaultCharset) {
+        int start = bytes.position();
+        int available = bytes.limit() - start;
+        if (available >= 3 && (bytes.get(start) & 0xFF) == 0xEF && (bytes.get(start + 1) & 0xFF) == 0xBB && (bytes.get(start + 2) & 0xFF) == 0xBF) {
+            bytes.position(start + 3);
+            return UTF8;
+        }
+        if (available >= 2 && (bytes.get(start) & 0xFF) == 0xFE && (bytes.get(start + 1) & 0xFF) == 0xFF) {
+            bytes.position(start + 2);
+            return Charset.forName("UTF-16BE");
+        }
+        if (available >= 2 && (bytes.get(start) & 0xFF) == 0xFF && (bytes.get(start + 1) & 0xFF) == 0xFE) {
+            bytes.position(start + 2);
+            return Charset.forName("UTF-16LE");
+        }
+        if (declaredCharset != null) {
+            return declaredCharset;
+        }
+        Charset metaCharset = prescan(bytes, start, start + Math.min(available, PRESCANLENGTH));
+        return (metaCharset != null) ? metaCharset : defaultCharset;
+    }
+
+    /**
+     * This method searches the charset declared by a tag &lt;meta&gt;, both in the form &lt;meta charset="..."&gt; and in
+     * the form &lt;meta http-equiv="Content-Type" content="...; charset=..."&gt;.
+     * The bytes are read as ASCII characters, because the declaration must be written with them.
+     */
+    private static Charset prescan(ByteBuffer bytes, int start, int end) {
+        StringBuilder prefix = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            prefix.append(Character.toLowerCase((char) (bytes.get(i) & 0xFF)));
+        }
+        int tagStart = prefix.indexOf("<meta");
+        while (tagStart != -1) {
+            int tagEnd = prefix.indexOf(">", tagStart);
+            if (tagEnd == -1) {
+                tagEnd = prefix.length();
+            }
+            int attribute = prefix.indexOf("charset", tagStart);
+            if (attribute != -1 && attribute < tagEnd) {
+                int value = attribute + "charset".length();
+                while (value < tagEnd && prefix.charAt(value) == ' ') {
+                    value++;
+                }
+                if (value < tagEnd && prefix.charAt(value) == '=') {
+                    Charset charset = forName(prefix, value + 1);
+                    if (charset != null) {
+                        /**
+                         * A declaration of UTF-16 read in ASCII is wrong (the document would have a byte order mark): As
+                         * browsers do, the document is decoded as UTF-8.
+                         */
+                        return charset.name().startsWith("UTF-16") ? UTF8 : charset;
+                    }
+                }
+            }
+            tagStart = prefix.indexOf("<meta", tagEnd);
+        }
+        return null;
+    }
+
+    /**
+     * This method reads the name of a charset, optionally included between quotes, starting from the specified position.
+     *
+     * @return                  The charset, or null if the name is empty or the charset is not supported.
+     */
+    private static Charset forName(CharSequence text, int start) {
+        int position = start;
+        while (position < text.length() && (text.charAt(position) == ' ' || text.charAt(position) == '"' || text.charAt(position) == '\'')) {
+            position++;
+        }
+        int end = position;
+        while (end < text.length() && " \"';>/".indexOf(text.charAt(end)) == -1) {
+            end++;
+        }
+        if (end == position) {
+            return null;
+        }
+        try {
+            String name = text.subSequence(position, end).toString();
+            return Charset.isSupported(name) ? Charset.forName(name) : null;
+        } catch (IllegalCharsetNameException ex) {
+            return null;
+        }
+    }
+}
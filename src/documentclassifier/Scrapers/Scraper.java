@@ -2,6 +2,7 @@
 package documentclassifier.Scrapers;
 
 import java.io.InputStream;
+import java.nio.charset.Charset;
 
 /**
  * Interface that every scraper must implement.
@@ -13,11 +14,16 @@ public interface Scraper {
     /**
      * Method that takes in input an InputStream, reads a document from it, and returns an array of strings,
      * with its title (position 0) and text (position 1).
+     * The bytes of the document are decoded with the charset chosen by {@link DocumentCharset#detect DocumentCharset}, so
+     * the result doesn't depend on the charset of the platform.
      * 
      * @param   IS              The InputStream from where reading a document.
+     * @param   declaredCharset The charset declared outside the document (for example by the header Content-Type of the
+     *                          HTTP response), or null if it is not known.
+     * @param   defaultCharset  The charset used if the document doesn't declare any charset.
      * @return                  An array of two strings, containing respectively the document's title and text.
      */
-    public String[] getDocument(InputStream IS);
+    public String[] getDocument(InputStream IS, Charset declaredCharset, Charset defaultCharset);
     
     /**
      * Method that returns a short description of this scraper (not longer than one row), like for example
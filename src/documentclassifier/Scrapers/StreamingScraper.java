@@ -0,0 +1,29 @@
+package documentclassifier.Scrapers;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Interface implemented by the scrapers that, besides returning the title and the text of a document as two strings, are
+ * also able to pass them to a {@link TextHandler} while they read the document.
+ * In this way the document can be analyzed while it is read, without keeping its whole text in memory.
+ * 
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public interface StreamingScraper extends Scraper {
+    
+    /**
+     * Method that takes in input an InputStream, reads a document from it, and passes its title and (a piece at a time)
+     * its text to the handler.
+     * The title and the text passed to the handler are the same that the method
+     * {@link Scraper#getDocument(InputStream, Charset, Charset) getDocument} would return.
+     * 
+     * @param   IS              The InputStream from where reading a document.
+     * @param   declaredCharset The charset declared outside the document, or null if it is not known.
+     * @param   defaultCharset  The charset used if the document doesn't declare any charset.
+     * @param   handler         The handler that receives the title and the text of the document.
+     * @throws  Exception       If the document can't be read.
+     */
+    public void getDocument(InputStream IS, Charset declaredCharset, Charset defaultCharset, TextHandler handler) throws Exception;
+    
+}
@@ -0,0 +1,32 @@
+package documentclassifier.Scrapers;
+
+import java.io.IOException;
+
+/**
+ * Interface that receives the content of a document from a {@link StreamingScraper} while this is reading it, so that the
+ * document can be analyzed a piece at a time, without creating a string with its whole text.
+ * 
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+public interface TextHandler {
+    
+    /**
+     * Method called once for each document with its title, before any piece of its text.
+     * 
+     * @param   title           The title of the document, already without the spaces at its beginning and at its end.
+     * @throws  IOException
+     */
+    public void title(String title) throws IOException;
+    
+    /**
+     * Method called for each piece of the text of the document, in the order they are read.
+     * The characters are valid only during the call, because the array can be reused for the following pieces.
+     * 
+     * @param   characters      The array containing the characters of the piece of text.
+     * @param   start           The position of the first character of the piece inside the array.
+     * @param   length          The number of characters of the piece.
+     * @throws  IOException
+     */
+    public void text(char[] characters, int start, int length) throws IOException;
+    
+}
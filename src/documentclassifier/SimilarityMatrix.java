@@ -0,0 +1,295 @@
+package documentclassifier;
+
+import documentclassifier.Metriche.TopKSelector;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class contains the values of the metric between all the pairs of documents of the training set, calculated once for
+ * all the validations, so that the K-Fold cross validation can be repeated with different partitionings (number of folds,
+ * stratified or random sampling) without ranking the documents again: The documents nearest to a query, inside the training
+ * set of any fold, are selected reading the values already calculated.
+ * <p>
+ * Both metrics are symmetric, so for the training sets not bigger than a threshold only the values above the diagonal of the
+ * matrix are memorized, in single precision (the same precision of the weights of the index), in direct buffers outside the
+ * heap. For the bigger training sets only the {@value #TOPNEIGHBOURS} nearest documents of each document are memorized: If,
+ * once excluded the documents that don't belong to the training set of a fold, not enough of them remain, the values of the
+ * query are calculated again from the index.
+ * <p>
+ * The rows of the matrix are calculated in parallel, a block at a time, each one against the inverted index of the whole
+ * training set: When the whole matrix is memorized, each row visits only the postings of the documents with a greater
+ * identifier, so the value of each pair is calculated only once; when only the nearest documents are memorized, each row
+ * is calculated entirely, since the nearest documents of a document can also precede it.
+ * The TF-IDF weights are calculated with the document frequencies of the whole training set, and not of the training set of
+ * each fold, so with this metric the validation is an approximation of the one done without the matrix (the Bhattacharrya
+ * distance between two documents doesn't depend on the other ones).
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class SimilarityMatrix {
+
+    /**
+     * The maximum dimension (in bytes) of the values above the diagonal for which the whole matrix is memorized.
+     */
+    static final long MATRIXLIMIT = 1L << 28;
+    /**
+     * The number of nearest documents memorized for each document, when the whole matrix is too big.
+     */
+    static final int TOPNEIGHBOURS = 256;
+    /**
+     * The maximum number of values memorized inside a single buffer.
+     */
+    private static final int BLOCKVALUES = 1 << 26;
+    /**
+     * The maximum number of rows calculated by a single task.
+     */
+    private static final int ROWSPERTASK = 16;
+    private final TrainingSetIndex trainingSet;
+    private final String metric;
+    private final boolean ascending;
+    /**
+     * The identifier of each document, that is its position inside the list of the documents of the index.
+     */
+    private final Map<Document, Integer> identifiers;
+    /**
+     * The value of the metric between each document and itself.
+     */
+    private final float[] diagonal;
+    /**
+     * If all the values above the diagonal are memorized (true), or only the nearest documents of each document (false).
+     */
+    private final boolean isComplete;
+    private FloatBuffer[] blocks;
+    private int[] rowBlock;
+    private int[] rowOffset;
+    private int numberNeighbours;
+    private IntBuffer neighbours;
+    private FloatBuffer neighbourValues;
+
+    /**
+     * This constructor calculates the values of the metric between all the documents of a training set.
+     *
+     * @param trainingSet               The training set, compiled into an inverted index.
+     * @param metric                    The name of the metric ("Bhattacharrya" or "TF-IDF").
+     * @param numberThreads             The number of threads that calculate the rows of the matrix in parallel.
+     * @throws InterruptedException     If the current thread is interrupted while the matrix is being calculated.
+     * @throws ExecutionException       If the calculation of a row fails.
+     */
+    public SimilarityMatrix(TrainingSetIndex trainingSet, String metric, int numberThreads) throws InterruptedException, ExecutionException {
+        this.trainingSet = trainingSet;
+        this.metric = metric;
+        this.ascending = metric.equals("Bhattacharrya");
+        List<Document> documents = trainingSet.getDocuments();
+        int size = documents.size();
+        identifiers = new HashMap<Document, Integer>(size * 2);
+        for (int document = 0; document < size; document++) {
+            identifiers.put(documents.get(document), document);
+        }
+        diagonal = new float[size];
+        isComplete = ((long) size * (size - 1) / 2) * 4 <= MATRIXLIMIT;
+        if (isComplete) {
+            allocateBlocks(size);
+        } else {
+            numberNeighbours = Math.min(TOPNEIGHBOURS, size - 1);
+            neighbours = ByteBuffer.allocateDirect(size * numberNeighbours * 4).asIntBuffer();
+            neighbourValues = ByteBuffer.allocateDirect(size * numberNeighbours * 4).asFloatBuffer();
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, numberThreads));
+        try {
+            Future<?> calculation = pool.submit(new RowTask(0, size));
+            calculation.get();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * This method divides the values above the diagonal between the buffers: Each row is memorized entirely inside a buffer,
+     * and contains the values between a document and the ones with a greater identifier.
+     */
+    private void allocateBlocks(int size) {
+        rowBlock = new int[size];
+        rowOffset = new int[size];
+        int numberBlocks = 0;
+        int[] blockSizes = new int[size + 1];
+        for (int row = 0; row < size; row++) {
+            int rowLength = size - 1 - row;
+            if (numberBlocks == 0 || blockSizes[numberBlocks - 1] + rowLength > BLOCKVALUES) {
+                numberBlocks++;
+            }
+            rowBlock[row] = numberBlocks - 1;
+            rowOffset[row] = blockSizes[numberBlocks - 1];
+            blockSizes[numberBlocks - 1] += rowLength;
+        }
+        blocks = new FloatBuffer[numberBlocks];
+        for (int block = 0; block < numberBlocks; block++) {
+            blocks[block] = ByteBuffer.allocateDirect(Math.max(1, blockSizes[block]) * 4).asFloatBuffer();
+        }
+    }
+
+    /**
+     * Task that calculates a group of rows of the matrix, dividing it in two halves (calculated in parallel) if it is too big.
+     */
+    private class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private int start, end;
+
+        private RowTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > ROWSPERTASK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new RowTask(start, middle), new RowTask(middle, end));
+                return;
+            }
+            for (int row = start; row < end; row++) {
+                double[] values = isComplete ? calculateRow(row, row) : calculateRow(row, 0);
+                diagonal[row] = (float) values[row];
+                if (isComplete) {
+                    FloatBuffer block = blocks[rowBlock[row]];
+                    int offset = rowOffset[row] - row - 1;
+                    for (int column = row + 1; column < values.length; column++) {
+                        block.put(offset + column, (float) values[column]);
+                    }
+                } else {
+                    /**
+                     * The document itself is excluded from its nearest documents (the value NaN is the worst of all).
+                     */
+                    values[row] = Double.NaN;
+                    int[] nearestDocuments = TopKSelector.selectTopK(values, numberNeighbours, ascending);
+                    for (int i = 0; i < nearestDocuments.length; i++) {
+                        neighbours.put(row * numberNeighbours + i, nearestDocuments[i]);
+                        neighbourValues.put(row * numberNeighbours + i, (float) values[nearestDocuments[i]]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This method calculates the values of the metric between a document and the documents of the training set, starting
+     * from the one with the identifier specified.
+     */
+    private double[] calculateRow(int row, int firstColumn) {
+        return KNNClassifier.calculateDistances(trainingSet, trainingSet.getDocuments().get(row).getHistogram(), metric, firstColumn);
+    }
+
+    /**
+     * This method selects the documents nearest to a query, among the ones of a subset of the training set.
+     * Two documents with the same value of the metric are ordered on their identifier, in ascending way.
+     *
+     * @param query                 The query, that must be a document of the training set.
+     * @param isTrainingDocument    For each identifier, if the corresponding document can be selected or not.
+     * @param K                     The number of documents to select.
+     * @return                      The (at most) K nearest documents, ordered according to their distance from the query.
+     * @throws IllegalArgumentException     If the query is not a document of the training set.
+     */
+    public Document[] rank(Document query, boolean[] isTrainingDocument, int K) {
+        int row = getIdentifier(query);
+        double[] values = new double[trainingSet.size()];
+        int[] candidates = new int[trainingSet.size()];
+        int numberCandidates = 0;
+        if (isComplete) {
+            for (int column = 0; column < values.length; column++) {
+                if (isTrainingDocument[column]) {
+                    values[numberCandidates] = get(row, column);
+                    candidates[numberCandidates++] = column;
+                }
+            }
+        } else {
+            for (int i = 0; i < numberNeighbours; i++) {
+                int column = neighbours.get(row * numberNeighbours + i);
+                if (isTrainingDocument[column]) {
+                    values[numberCandidates] = neighbourValues.get(row * numberNeighbours + i);
+                    candidates[numberCandidates++] = column;
+                }
+            }
+            if (isTrainingDocument[row]) {
+                values[numberCandidates] = diagonal[row];
+                candidates[numberCandidates++] = row;
+            }
+            if (numberCandidates < K && numberNeighbours < trainingSet.size() - 1) {
+                /**
+                 * Too many of the nearest documents don't belong to the training set of the fold: The row is calculated again.
+                 */
+                double[] rowValues = calculateRow(row, 0);
+                numberCandidates = 0;
+                for (int column = 0; column < rowValues.length; column++) {
+                    if (isTrainingDocument[column]) {
+                        values[numberCandidates] = (float) rowValues[column];
+                        candidates[numberCandidates++] = column;
+                    }
+                }
+            }
+        }
+        double[] candidateValues = new double[numberCandidates];
+        System.arraycopy(values, 0, candidateValues, 0, numberCandidates);
+        int[] nearestDocuments = TopKSelector.selectTopK(candidateValues, K, ascending);
+        Document[] nearestNeighbours = new Document[nearestDocuments.length];
+        for (int i = 0; i < nearestDocuments.length; i++) {
+            nearestNeighbours[i] = trainingSet.getDocuments().get(candidates[nearestDocuments[i]]);
+        }
+        return nearestNeighbours;
+    }
+
+    /**
+     * This method returns the value of the metric between two documents, when the whole matrix is memorized.
+     */
+    private float get(int row, int column) {
+        if (row == column) {
+            return diagonal[row];
+        }
+        if (row > column) {
+            int swap = row;
+            row = column;
+            column = swap;
+        }
+        return blocks[rowBlock[row]].get(rowOffset[row] + column - row - 1);
+    }
+
+    /**
+     * This method returns the identifier of a document inside the matrix.
+     *
+     * @param document          A document of the training set.
+     * @return                  Its identifier, between 0 and the number of documents of the training set (excluded).
+     * @throws IllegalArgumentException     If the document is not present in the training set of the matrix.
+     */
+    public int getIdentifier(Document document) {
+        Integer identifier = identifiers.get(document);
+        if (identifier == null) {
+            throw new IllegalArgumentException("The document \"" + document.getTitle() + "\" is not present in the similarity matrix");
+        }
+        return identifier;
+    }
+
+    /**
+     * Accessor method to read the name of the metric of the values of the matrix.
+     *
+     * @return                  The name of the metric.
+     */
+    public String getMetric() {
+        return metric;
+    }
+
+    /**
+     * This method returns the number of different documents of the training set.
+     *
+     * @return                  The number of rows (and of columns) of the matrix.
+     */
+    public int size() {
+        return diagonal.length;
+    }
+}
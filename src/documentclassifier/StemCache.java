@@ -0,0 +1,116 @@
+package documentclassifier;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class memorizes the roots of the terms already stemmed, so that the most frequent terms (in a natural language a few
+ * thousands of terms are the majority of the occurrences) are stemmed only once.
+ * <p>
+ * The cache has a maximum number of terms: When it's full, the least recently used term is removed.
+ * It can be used by more threads at the same time: To avoid that all of them wait for the same lock, the terms are divided
+ * between more segments (each one with its own lock and its own fraction of the maximum number of terms), according to their hash.
+ * <p>
+ * The number of hits and misses is counted, to verify the effectiveness of the cache.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class StemCache {
+
+    private static final int NUMBERSEGMENTS = 16;
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * This constructor creates a new, empty cache.
+     *
+     * @param capacity          The maximum number of terms memorized by the cache.
+     */
+    public StemCache(int capacity) {
+        segments = new Segment[NUMBERSEGMENTS];
+        int segmentCapacity = Math.max(1, capacity / NUMBERSEGMENTS);
+        for (int i = 0; i < NUMBERSEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * This method returns the root of a term, if it is inside the cache.
+     *
+     * @param term              The term to stem.
+     * @return                  The root of the term, or null if the term is not inside the cache.
+     */
+    public String get(String term) {
+        Segment segment = getSegment(term);
+        String root;
+        synchronized (segment) {
+            root = segment.get(term);
+        }
+        if (root != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return root;
+    }
+
+    /**
+     * This method inserts a term and its root into the cache, removing the least recently used term of its segment if
+     * this is full.
+     *
+     * @param term              The term stemmed.
+     * @param root              The root of the term.
+     */
+    public void put(String term, String root) {
+        Segment segment = getSegment(term);
+        synchronized (segment) {
+            segment.put(term, root);
+        }
+    }
+
+    /**
+     * Accessor method to read the number of terms found inside the cache.
+     *
+     * @return                  The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Accessor method to read the number of terms not found inside the cache, which had to be stemmed.
+     *
+     * @return                  The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Segment getSegment(String term) {
+        int hash = term.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (NUMBERSEGMENTS - 1)];
+    }
+
+    /**
+     * A segment of the cache: A map whose iteration order is the order of access, so that the eldest entry is the least
+     * recently used one.
+     */
+    private static class Segment extends LinkedHashMap<String, String> {
+
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > capacity;
+        }
+    }
+}
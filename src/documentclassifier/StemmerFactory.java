@@ -0,0 +1,102 @@
+package documentclassifier;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.tartarus.snowball.SnowballStemmer;
+
+/**
+ * This class creates the stemmers of the Snowball project, and gives to each thread its own instance, so that more documents
+ * can be stemmed at the same time (an instance of a Snowball stemmer has an internal state, and can't be shared between threads).
+ * <p>
+ * The class of the stemmer is resolved through reflection only once, when the factory is created, while the terms are stemmed
+ * calling directly the method {@link SnowballStemmer#stem stem}, without reflection.
+ * There is a single factory for each class of stemmer, obtained through the method {@link #getFactory getFactory}.
+ * <p>
+ * The roots of the terms are memorized inside a {@link StemCache} shared by all the threads, so the most frequent terms are
+ * stemmed only once.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class StemmerFactory {
+
+    /**
+     * Map that associates the complete name of each class of stemmer used until now to its factory.
+     */
+    private static final Map<String, StemmerFactory> factories = new HashMap<String, StemmerFactory>();
+    /**
+     * The maximum number of terms memorized by the cache of each stemmer.
+     */
+    private static final int CACHECAPACITY = 1 << 16;
+    private final Class<? extends SnowballStemmer> stemmerClass;
+    private final StemCache cache = new StemCache(CACHECAPACITY);
+    /**
+     * The instance of the stemmer of each thread, created the first time the thread stems a term.
+     */
+    private final ThreadLocal<SnowballStemmer> stemmers = new ThreadLocal<SnowballStemmer>() {
+
+        @Override
+        protected SnowballStemmer initialValue() {
+            try {
+                return stemmerClass.getDeclaredConstructor().newInstance();
+            } catch (Exception ex) {
+                throw new IllegalStateException("The stemmer " + stemmerClass.getName() + " can't be created", ex);
+            }
+        }
+    };
+
+    private StemmerFactory(Class<? extends SnowballStemmer> stemmerClass) {
+        this.stemmerClass = stemmerClass;
+    }
+
+    /**
+     * This method returns the factory of the stemmers of the specified class, creating it the first time.
+     *
+     * @param stemmer           The complete name of the class which implements the stemmer.
+     * @return                  The factory of the stemmers of the class.
+     * @throws Exception        If the class doesn't exist, it isn't a Snowball stemmer, or it can't be instantiated.
+     */
+    public static StemmerFactory getFactory(String stemmer) throws Exception {
+        synchronized (factories) {
+            StemmerFactory factory = factories.get(stemmer);
+            if (factory == null) {
+                Class<? extends SnowballStemmer> stemmerClass = Class.forName(stemmer).asSubclass(SnowballStemmer.class);
+                /**
+                 * An instance is created immediately, so that a class that can't be instantiated is reported here, and not
+                 * while stemming the terms.
+                 */
+                stemmerClass.getDeclaredConstructor().newInstance();
+                factory = new StemmerFactory(stemmerClass);
+                factories.put(stemmer, factory);
+            }
+            return factory;
+        }
+    }
+
+    /**
+     * This method returns the root of a term, reading it from the cache or (if it's not there) stemming the term with the
+     * stemmer of the current thread.
+     *
+     * @param term              The term to stem.
+     * @return                  The root of the term.
+     */
+    public String stem(String term) {
+        String root = cache.get(term);
+        if (root == null) {
+            SnowballStemmer stemmer = stemmers.get();
+            stemmer.setCurrent(term);
+            stemmer.stem();
+            root = stemmer.getCurrent();
+            cache.put(term, root);
+        }
+        return root;
+    }
+
+    /**
+     * Accessor method to read the cache of the roots of the terms stemmed by this factory.
+     *
+     * @return                  The cache of the roots.
+     */
+    public StemCache getCache() {
+        return cache;
+    }
+}
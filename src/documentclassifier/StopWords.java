@@ -0,0 +1,96 @@
+package documentclassifier;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class reads the lists of stopwords from the file system, and keeps them in memory, so that each list is read only once
+ * and shared by all the documents (of the training set and the queries) pre-processed with it.
+ * <p>
+ * Each list is identified by the canonical path of its file, and it is read again only if the date of last modification or the
+ * dimension of the file have changed (for example because the user has modified it).
+ * <p>
+ * The files are in the format of the Snowball project: Each stopword is at the start of a row, optionally followed by a comment
+ * that starts with a vertical bar, while the rows that start with a space (or with the vertical bar) contain only a comment.
+ * Like the lists distributed by the Snowball project, the files are read in ISO-8859-1, independently from the charset of the
+ * platform.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class StopWords {
+
+    /**
+     * Map that associates the canonical path of each list of stopwords read until now to its content.
+     */
+    private static final Map<String, StopWords> lists = new HashMap<String, StopWords>();
+    private final long lastModified;
+    private final long length;
+    private final Set<String> stopWords;
+
+    private StopWords(long lastModified, long length, Set<String> stopWords) {
+        this.lastModified = lastModified;
+        this.length = length;
+        this.stopWords = stopWords;
+    }
+
+    /**
+     * This method returns the set of stopwords contained in a file, reading it only if it hasn't already been read, or
+     * if it has been modified in the meantime.
+     *
+     * @param path              The path of the file containing the list of stopwords.
+     * @return                  The set of stopwords, that can't be modified.
+     * @throws IOException
+     */
+    public static Set<String> getStopWords(String path) throws IOException {
+        File stopWordsListFile = new File(path).getCanonicalFile();
+        String key = stopWordsListFile.getPath();
+        synchronized (lists) {
+            StopWords list = lists.get(key);
+            if (list == null || list.lastModified != stopWordsListFile.lastModified() || list.length != stopWordsListFile.length()) {
+                list = new StopWords(stopWordsListFile.lastModified(), stopWordsListFile.length(), read(stopWordsListFile));
+                lists.put(key, list);
+            }
+            return list.stopWords;
+        }
+    }
+
+    /**
+     * This method reads a list of stopwords in the format (and in the encoding, ISO-8859-1) of the Snowball project.
+     *
+     * @param stopWordsListFile The file containing the list of stopwords.
+     * @return                  The set of stopwords, that can't be modified.
+     * @throws IOException
+     */
+    private static Set<String> read(File stopWordsListFile) throws IOException {
+        Set<String> stopWordsList = new HashSet<String>();
+        BufferedReader stopWordsBR = new BufferedReader(new InputStreamReader(new FileInputStream(stopWordsListFile), "ISO-8859-1"));
+        try {
+            String row;
+            while ((row = stopWordsBR.readLine()) != null) {
+                /**
+                 * The rows that start with a space are comments; otherwise the stopword is everything before the
+                 * (optional) vertical bar that starts the comment.
+                 */
+                if (row.isEmpty() || Character.isWhitespace(row.charAt(0))) {
+                    continue;
+                }
+                int commentStart = row.indexOf('|');
+                String stopWord = (commentStart == -1) ? row.trim() : row.substring(0, commentStart).trim();
+                if (!stopWord.isEmpty()) {
+                    stopWordsList.add(stopWord);
+                }
+            }
+        } finally {
+            stopWordsBR.close();
+        }
+        return Collections.unmodifiableSet(stopWordsList);
+    }
+}
@@ -0,0 +1,236 @@
+package documentclassifier;
+
+import documentclassifier.Metriche.SparseVector;
+import documentclassifier.Metriche.TermDictionary;
+import documentclassifier.Scrapers.TextHandler;
+import java.util.Set;
+
+/**
+ * This class pre-processes the title and the text of a document (removing numbers and stopwords, and stemming the remaining
+ * terms), and creates the histogram of its terms.
+ * <p>
+ * The text can be given all at once as a string, or (since this class implements {@link TextHandler}) a piece at a time,
+ * directly by a {@link documentclassifier.Scrapers.StreamingScraper} while it reads the document: In this second case the
+ * terms are counted while the document is read, the hash of the content of the document is calculated in the same way,
+ * and the whole text is kept in memory only if it is requested.
+ * <p>
+ * The terms of a query document that are not present in the global {@link TermDictionary} are not added to it, since they
+ * can't match any document of the training set: They are only counted in the length of the query.
+ * <p>
+ * An instance of this class must be used for a single document, and by a single thread (the tokenizer and the builder of the
+ * histogram are the ones of the current thread, reused for all its documents).
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class TextAnalyzer implements TextHandler {
+
+    /**
+     * The terms of the title have a double weight than the terms of the text, because they are more directly related
+     * to the argument and context of the document.
+     */
+    public static final int TITLEWEIGHT = 2;
+    public static final int TEXTWEIGHT = 1;
+    private static final ThreadLocal<Tokenizer> tokenizers = new ThreadLocal<Tokenizer>() {
+
+        @Override
+        protected Tokenizer initialValue() {
+            return new Tokenizer();
+        }
+    };
+    private static final ThreadLocal<HistogramBuilder> histogramBuilders = new ThreadLocal<HistogramBuilder>() {
+
+        @Override
+        protected HistogramBuilder initialValue() {
+            return new HistogramBuilder();
+        }
+    };
+    private final StemmerFactory stemmer;
+    private final Set<String> stopWordsList;
+    private final TermDictionary dictionary = TermDictionary.getDictionary();
+    /**
+     * True if the document is a query, whose unknown terms must not be added to the dictionary.
+     */
+    private final boolean isQuery;
+    private final Tokenizer tokenizer = tokenizers.get();
+    private final HistogramBuilder documentHistogram = histogramBuilders.get();
+    private String title;
+    /**
+     * The text received until now, or null if the text must not be kept in memory.
+     */
+    private StringBuilder text;
+    private long contentHash = Document.CONTENTHASHBASIS;
+
+    /**
+     * This constructor creates a new analyzer, that will pre-process the document with the settings specified as input
+     * parameter.
+     *
+     * @param configuration     The settings used to pre-process the text of the document.
+     * @param isRetainingText   True if the text received a piece at a time must be kept, to be read at the end through the
+     *                          method {@link #getText getText}; false otherwise.
+     * @throws Exception
+     */
+    public TextAnalyzer(AnalysisConfiguration configuration, boolean isRetainingText) throws Exception {
+        this(configuration, isRetainingText, false);
+    }
+
+    /**
+     * This constructor creates a new analyzer like the previous one, specifying also if the document is a query.
+     *
+     * @param configuration     The settings used to pre-process the text of the document.
+     * @param isRetainingText   True if the text received a piece at a time must be kept, false otherwise.
+     * @param isQuery           True if the document is a query, whose terms not present in the dictionary must be ignored
+     *                          (and not added to it); false if it is a document of the training set.
+     * @throws Exception
+     */
+    public TextAnalyzer(AnalysisConfiguration configuration, boolean isRetainingText, boolean isQuery) throws Exception {
+        this.isQuery = isQuery;
+        /**
+         * The stemmer is resolved only once for each class, and each thread uses its own instance of it.
+         */
+        this.stemmer = configuration.isStemming() ? StemmerFactory.getFactory(configuration.getStemmer()) : null;
+        /**
+         * The set of stopwords is read only once, and shared by all the documents pre-processed with the same configuration.
+         * If the user has chosen not to enable the removal of stopwords, the set is empty.
+         */
+        this.stopWordsList = configuration.getStopWords();
+        this.text = isRetainingText ? new StringBuilder() : null;
+        documentHistogram.clear();
+        tokenizer.startToken();
+    }
+
+    /**
+     * This method adds the terms of a string to the histogram, with the weight specified as input parameter.
+     *
+     * @param field             The title or the text of the document.
+     * @param weight            The weight of each occurrence of a term of the string.
+     */
+    public void addTerms(String field, int weight) {
+        /**
+         * The tokenizer converts each term to lower case while reading it.
+         */
+        tokenizer.reset(field);
+        while (tokenizer.nextToken()) {
+            addCurrentTerm(weight);
+        }
+    }
+
+    /**
+     * This method receives the title of the document from the scraper, before its text.
+     *
+     * @param title             The title of the document.
+     */
+    public void title(String title) {
+        this.title = title;
+        addTerms(title, TITLEWEIGHT);
+        for (int i = 0; i < title.length(); i++) {
+            contentHash = Document.updateContentHash(contentHash, title.charAt(i));
+        }
+        contentHash = Document.endContentHashField(contentHash, false);
+        tokenizer.startToken();
+    }
+
+    /**
+     * This method receives a piece of the text of the document from the scraper, and divides it into terms, which are added
+     * to the histogram.
+     * A term can also be divided between two pieces.
+     */
+    public void text(char[] characters, int start, int length) {
+        if (text != null) {
+            text.append(characters, start, length);
+        }
+        for (int i = start; i < start + length; i++) {
+            char currentCharacter = characters[i];
+            contentHash = Document.updateContentHash(contentHash, currentCharacter);
+            if (Tokenizer.isSeparator(currentCharacter)) {
+                if (tokenizer.length() > 0) {
+                    addCurrentTerm(TEXTWEIGHT);
+                    tokenizer.startToken();
+                }
+            } else {
+                tokenizer.appendCharacter(currentCharacter);
+            }
+        }
+    }
+
+    /**
+     * This method adds the current term of the tokenizer to the histogram, with the weight specified as input parameter.
+     * Removal of numbers (in any case) and of stopwords (if enabled by the user).
+     * The word 'removal' is inappropriate, because what is really done is simply to not take
+     * into consideration a term if it is present in the stopwords list, or if it represents
+     * a number. In these two cases the term is not added to the histogram of the document.
+     */
+    private void addCurrentTerm(int weight) {
+        if (tokenizer.isNumber()) {
+            return;
+        }
+        String currentToken = tokenizer.getToken();
+        if (!stopWordsList.contains(currentToken)) {
+            if (stemmer != null) {
+                /**
+                 * Stemming of the current term: The stemmer creates a new term containing the root
+                 * of the one given in input.
+                 */
+                currentToken = stemmer.stem(currentToken);
+            }
+            /**
+             * The frequency of the current term (eventually stemmed to its root) is updated inside the
+             * document's histogram (depending on the weight assigned to the current term), identifying
+             * the term through the dictionary.
+             */
+            if (isQuery) {
+                int identifier = dictionary.findIdentifier(currentToken);
+                if (identifier < 0) {
+                    documentHistogram.addUnknown(weight);
+                } else {
+                    documentHistogram.add(identifier, weight);
+                }
+            } else {
+                documentHistogram.add(dictionary.getIdentifier(currentToken), weight);
+            }
+        }
+    }
+
+    /**
+     * This method creates the histogram of the document, normalizing the frequencies of its terms to its length.
+     * It must be called only once, after all the document has been received.
+     * The vector is immutable, so once created the histogram of this document can't be modified anymore
+     * (accidentally or intentionally) by other classes that read it.
+     *
+     * @return                  The histogram of the terms of the document.
+     */
+    public SparseVector createHistogram() {
+        if (tokenizer.length() > 0) {
+            addCurrentTerm(TEXTWEIGHT);
+            tokenizer.startToken();
+        }
+        return documentHistogram.build();
+    }
+
+    /**
+     * Accessor method to read the title received from the scraper.
+     *
+     * @return                  The title of the document.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Accessor method to read the text received from the scraper.
+     *
+     * @return                  The text of the document, or null if it hasn't been kept.
+     */
+    public String getText() {
+        return (text != null) ? text.toString() : null;
+    }
+
+    /**
+     * Accessor method to read the hash of the title and the text received from the scraper, equal to the one calculated
+     * by the method {@link Document#calculateContentHash(String, String) calculateContentHash}.
+     *
+     * @return                  The hash of the content of the document.
+     */
+    public long getContentHash() {
+        return Document.endContentHashField(contentHash, false);
+    }
+}
@@ -0,0 +1,179 @@
+package documentclassifier;
+
+import java.util.Arrays;
+
+/**
+ * This class divides a text into its terms, scanning it only once, and converts each term to lower case while reading it,
+ * inside a buffer that is reused for all the terms.
+ * <p>
+ * The terms are separated by the same characters used until now to pre-process the documents (spaces, punctuation and
+ * brackets); while a term is read, it is also checked if it's formed only by digits (that is, if it represents a number),
+ * without using a regular expression.
+ * <p>
+ * The strings of the terms are memorized inside a table (indexed by their hash, calculated while reading them), so a term
+ * already met is returned without creating a new string: Since the most frequent terms are the majority of the occurrences,
+ * most of the terms are read without allocating memory.
+ * <p>
+ * An instance of this class can't be shared between threads: Each thread must use its own instance, that can be reused for
+ * all the documents it pre-processes.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class Tokenizer {
+
+    private static final String SEPARATORS = " \t\n\r\f,;.:!'\"()?[]=-@";
+    /**
+     * The dimension of the table of the strings of the terms: When half of it is full, it is emptied.
+     */
+    private static final int TABLESIZE = 1 << 13;
+    private static final boolean[] isSeparator = new boolean[128];
+
+    static {
+        for (int i = 0; i < SEPARATORS.length(); i++) {
+            isSeparator[SEPARATORS.charAt(i)] = true;
+        }
+    }
+    private String text;
+    private int position;
+    private char[] buffer = new char[64];
+    private int length;
+    private int hash;
+    private boolean isNumber;
+    private final String[] tableTerms = new String[TABLESIZE];
+    private int numberTableTerms;
+
+    /**
+     * This method starts the reading of a new text.
+     *
+     * @param text              The text to divide into terms.
+     */
+    public void reset(String text) {
+        this.text = text;
+        this.position = 0;
+        this.length = 0;
+    }
+
+    /**
+     * This method reads the next term of the text, converting it to lower case.
+     *
+     * @return                  True if a new term has been read, false if the text is finished.
+     */
+    public boolean nextToken() {
+        int textLength = text.length();
+        while (position < textLength && isSeparator(text.charAt(position))) {
+            position++;
+        }
+        if (position == textLength) {
+            length = 0;
+            return false;
+        }
+        startToken();
+        char currentCharacter;
+        while (position < textLength && !isSeparator(currentCharacter = text.charAt(position))) {
+            appendCharacter(currentCharacter);
+            position++;
+        }
+        return true;
+    }
+
+    /**
+     * This method starts a new term, that will be formed by the characters added with the method
+     * {@link #appendCharacter appendCharacter}.
+     * It is used when the text is not available all at once, but it is received a piece at a time.
+     */
+    public void startToken() {
+        length = 0;
+        hash = 0;
+        isNumber = true;
+    }
+
+    /**
+     * This method adds a character (that must not be a separator) to the current term, converting it to lower case.
+     *
+     * @param character         The character to add.
+     */
+    public void appendCharacter(char character) {
+        character = Character.toLowerCase(character);
+        if (length == buffer.length) {
+            char[] newBuffer = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, newBuffer, 0, length);
+            buffer = newBuffer;
+        }
+        buffer[length++] = character;
+        hash = 31 * hash + character;
+        if (character < '0' || character > '9') {
+            isNumber = false;
+        }
+    }
+
+    /**
+     * This method returns the number of characters of the current term.
+     *
+     * @return                  The length of the current term, or 0 if no term has been read.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * This method returns if the current term is formed only by digits.
+     *
+     * @return                  True if the current term represents a number, false otherwise.
+     */
+    public boolean isNumber() {
+        return isNumber;
+    }
+
+    /**
+     * This method returns the current term, in lower case.
+     * If the term has already been met, the same string is returned, without creating a new one.
+     *
+     * @return                  The current term.
+     */
+    public String getToken() {
+        int mask = TABLESIZE - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String term;
+        while ((term = tableTerms[slot]) != null) {
+            if (term.hashCode() == hash && equalsBuffer(term)) {
+                return term;
+            }
+            slot = (slot + 1) & mask;
+        }
+        term = new String(buffer, 0, length);
+        if (numberTableTerms >= TABLESIZE / 2) {
+            /**
+             * The table is too full to be efficient: It is emptied, and it will be filled again by the terms
+             * met from now on (the most frequent ones will be inserted again soon).
+             */
+            Arrays.fill(tableTerms, null);
+            numberTableTerms = 0;
+            slot = (hash ^ (hash >>> 16)) & mask;
+        }
+        tableTerms[slot] = term;
+        numberTableTerms++;
+        return term;
+    }
+
+    private boolean equalsBuffer(String term) {
+        if (term.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (term.charAt(i) != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method returns if a character separates two terms.
+     *
+     * @param character         The character to check.
+     * @return                  True if the character is a separator, false otherwise.
+     */
+    public static boolean isSeparator(char character) {
+        return character < 128 && isSeparator[character];
+    }
+}
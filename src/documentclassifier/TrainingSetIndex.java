@@ -0,0 +1,81 @@
+package documentclassifier;
+
+import documentclassifier.Metriche.InvertedIndex;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class represents a training set compiled into an {@link InvertedIndex}, that can be used by the metrics
+ * to rank its documents to a query without scanning the histogram of each one of them.
+ * <p>
+ * Each document of the training set is present only once, even if it belongs to more than one category, and
+ * its position inside the list returned by {@link #getDocuments getDocuments} is equal to the identifier it
+ * has been assigned inside the index.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+class TrainingSetIndex {
+
+    /**
+     * The documents of the training set, in the order of their identifiers inside the index.
+     */
+    private List<Document> documents;
+    private InvertedIndex index;
+
+    /**
+     * This constructor compiles the training set provided in input into a new inverted index.
+     *
+     * @param trainingSet       The training set, represented like a set of subsets of documents (one for each category).
+     */
+    public TrainingSetIndex(Set<Set<Document>> trainingSet) {
+        /**
+         * The same instance of a document can be present in more than one category: It must be indexed only once.
+         */
+        Set<Document> distinctDocuments = new LinkedHashSet<Document>();
+        for (Set<Document> subSetTrainingSet : trainingSet) {
+            distinctDocuments.addAll(subSetTrainingSet);
+        }
+        documents = new ArrayList<Document>(distinctDocuments.size());
+        index = new InvertedIndex();
+        for (Document currentDocument : distinctDocuments) {
+            index.addDocument(currentDocument.getHistogram());
+            documents.add(currentDocument);
+        }
+        documents = Collections.unmodifiableList(documents);
+        /**
+         * The norms of the TF-IDF vectors of the documents are calculated now together with the training set,
+         * so that the first query doesn't have to wait for them.
+         */
+        index.getTFIDFWeights();
+    }
+
+    /**
+     * Accessor method to read the documents of the training set.
+     *
+     * @return                  The list of documents, in the order of their identifiers inside the index.
+     */
+    public List<Document> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Accessor method to read the inverted index of the training set.
+     *
+     * @return                  The inverted index of the training set.
+     */
+    public InvertedIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * This method returns the number of different documents of the training set.
+     *
+     * @return                  The number of different documents of the training set.
+     */
+    public int size() {
+        return documents.size();
+    }
+}
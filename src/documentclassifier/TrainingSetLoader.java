@@ -0,0 +1,343 @@
+package documentclassifier;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class reads a training set from the file system, creating an instance of the class {@link Document} for each
+ * one of its files.
+ * <p>
+ * The documents inside the training set directory must be organized inside one or more subdirectories, one for each
+ * category of the training set, and having the name of this.
+ * All the settings needed to read and pre-process the documents are provided through an {@link AnalysisConfiguration},
+ * so the loader can be used both by the graphical application and by the batch classifier.
+ * <p>
+ * The files are read, scraped and transformed into histograms in parallel by a bounded pool of threads (one task for each file),
+ * while the results are merged into the categories by a single thread, in the same order of the files inside the directories:
+ * In this way the training set is always the same, independently from the order in which the tasks complete.
+ * <p>
+ * After the files have been read, their documents are saved into a {@link TrainingSetSnapshot}: The next time, only the files
+ * added or modified in the meantime (detected through their dimension and date of last modification) are read again, while the
+ * documents of the other files are taken from the snapshot, and the removed files are simply ignored.
+ * The categories of each document and the duplicates are always determined again, so the result is the same of a complete reading.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+class TrainingSetLoader {
+
+    /**
+     * The settings used to read and pre-process each document.
+     */
+    private AnalysisConfiguration configuration;
+    /**
+     * The number of threads that read the documents in parallel.
+     */
+    private int numberThreads;
+    /**
+     * If the training set must be read from (and saved into) its {@link TrainingSetSnapshot}, when possible.
+     */
+    private boolean isUsingSnapshot = true;
+    /**
+     * If the text of each document must be kept in memory, or it must be read again from its file when it is requested.
+     */
+    private boolean isRetainingText = true;
+    /**
+     * The number of different documents read by the last call of the method {@link #load load}.
+     */
+    private int numberDocuments;
+    /**
+     * The number of files read by the last call of the method {@link #load load}, that were copies of a document already
+     * read (in the same category or in another one).
+     */
+    private int numberDuplicates;
+    /**
+     * The number of files read and scraped by the last call of the method {@link #load load}, because they weren't inside the
+     * snapshot of the training set or they have been modified after it.
+     */
+    private int numberReadFiles;
+
+    /**
+     * This constructor creates a new loader, which will read the documents with the settings provided in input.
+     *
+     * @param configuration     The settings used to read and pre-process each document.
+     */
+    public TrainingSetLoader(AnalysisConfiguration configuration) {
+        this(configuration, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * This constructor creates a new loader, which will read the documents with the settings provided in input,
+     * using the specified number of threads.
+     *
+     * @param configuration     The settings used to read and pre-process each document.
+     * @param numberThreads     The number of threads that read the documents in parallel.
+     */
+    public TrainingSetLoader(AnalysisConfiguration configuration, int numberThreads) {
+        this.configuration = configuration;
+        this.numberThreads = Math.max(1, numberThreads);
+    }
+
+    /**
+     * This method enables or disables the use of the {@link TrainingSetSnapshot} of the training set (by default it is enabled).
+     *
+     * @param isUsingSnapshot   True if the training set must be read from its snapshot when this is still valid, and the
+     *                          snapshot must be written after reading the files; false otherwise.
+     */
+    public void setUsingSnapshot(boolean isUsingSnapshot) {
+        this.isUsingSnapshot = isUsingSnapshot;
+    }
+
+    /**
+     * This method sets if the text of each document must be kept in memory (by default it is kept).
+     * Since after the creation of the histograms the text is used only to show the documents in the GUI, it can be
+     * removed from memory, almost halving the memory occupied by the training set: In this case it is read again from
+     * the file of the document, only when it is requested.
+     *
+     * @param isRetainingText   True if the text of each document must be kept in memory, false otherwise.
+     */
+    public void setRetainingText(boolean isRetainingText) {
+        this.isRetainingText = isRetainingText;
+    }
+
+    /**
+     * This method reads the training set from the specified directory.
+     * It is possible to have documents that belong to more than one category at the same time, by putting a copy of the
+     * same document in every subdirectory corresponding to one of the categories it belongs to.
+     *
+     * @param   directory   The directory containing the training set.
+     * @return              The training set, represented like a set of subsets of documents (one for each category), that
+     *                      can't be modified, or null if the path doesn't represent a directory.
+     * @throws  Exception
+     */
+    public Set<Set<Document>> load(File directory) throws Exception {
+
+        if (!directory.isDirectory()) {
+            return null;
+        }
+        /**
+         * First, the files of each category are listed, in the order they are returned by the file system.
+         */
+        List<String> categories = new ArrayList<String>();
+        List<File[]> files = new ArrayList<File[]>();
+        int numberFiles = 0;
+        for (File D : directory.listFiles()) {
+            if (D.isDirectory() && D.list().length > 0) {
+                File[] filesCurrentCategory = D.listFiles(new FileFilter() {
+
+                    public boolean accept(File arg) {
+                        if (arg.isDirectory()) {
+                            return false;
+                        } else {
+                            return true;
+                        }
+                    }
+                });
+                categories.add(D.getName());
+                files.add(filesCurrentCategory);
+                numberFiles += filesCurrentCategory.length;
+            }
+        }
+        /**
+         * If the snapshot of the training set has been written with the same settings, the documents of the files that haven't
+         * been added or modified after it are taken from it, without scraping the files again.
+         */
+        TrainingSetSnapshot snapshot = null;
+        if (isUsingSnapshot) {
+            snapshot = new TrainingSetSnapshot(directory, configuration);
+            snapshot.read();
+        }
+
+        Set<Set<Document>> trainingSet = Collections.synchronizedSet(new LinkedHashSet<Set<Document>>());
+        numberDocuments = 0;
+        numberDuplicates = 0;
+        numberReadFiles = 0;
+        /**
+         * Map that associates the hash of the content of each different document read until now, to the documents
+         * with that hash (more than one only in case of a collision).
+         */
+        Map<Long, List<Document>> documentsHashes = new HashMap<Long, List<Document>>();
+        /**
+         * For each file, the document taken from the snapshot, or (if this is null) the task that reads it.
+         * A task is submitted for each file that must be read, in the order they are listed.
+         */
+        List<Document[]> documentsFiles = new ArrayList<Document[]>();
+        List<List<Future<Document>>> documentsCategories = new ArrayList<List<Future<Document>>>();
+        ExecutorService executor = Executors.newFixedThreadPool(numberThreads);
+        try {
+            for (int i = 0; i < categories.size(); i++) {
+                final String category = categories.get(i);
+                File[] filesCurrentCategory = files.get(i);
+                Document[] documentsCurrentFiles = new Document[filesCurrentCategory.length];
+                List<Future<Document>> documentsCurrentCategory = new ArrayList<Future<Document>>();
+                for (int j = 0; j < filesCurrentCategory.length; j++) {
+                    final File F = filesCurrentCategory[j];
+                    if (snapshot != null) {
+                        documentsCurrentFiles[j] = snapshot.getDocument(category, F);
+                    }
+                    if (documentsCurrentFiles[j] != null) {
+                        documentsCurrentCategory.add(null);
+                    } else {
+                        numberReadFiles++;
+                        documentsCurrentCategory.add(executor.submit(new Callable<Document>() {
+
+                            public Document call() throws Exception {
+                                return readDocument(F, category);
+                            }
+                        }));
+                    }
+                }
+                documentsFiles.add(documentsCurrentFiles);
+                documentsCategories.add(documentsCurrentCategory);
+            }
+            /**
+             * Then the documents are merged into the training set, in the same order of the tasks.
+             */
+            for (int i = 0; i < categories.size(); i++) {
+                String category = categories.get(i);
+                Set<Document> documentsCurrentCategory = new LinkedHashSet<Document>();
+                Document[] documentsCurrentFiles = documentsFiles.get(i);
+                for (int j = 0; j < documentsCurrentFiles.length; j++) {
+                    Document newDocument = documentsCurrentFiles[j];
+                    if (newDocument == null) {
+                        try {
+                            newDocument = documentsCategories.get(i).get(j).get();
+                        } catch (ExecutionException ex) {
+                            throw (ex.getCause() instanceof Exception) ? (Exception) ex.getCause() : ex;
+                        }
+                    }
+                    /**
+                     * The documents of the snapshot written without their texts can't have them in any case.
+                     */
+                    if (!isRetainingText || !newDocument.isTextRetained()) {
+                        newDocument.releaseText(configuration);
+                    }
+                    boolean addNewDocument = true;
+                    /**
+                     * If the same document (that is, a document with the same text and title) is already inside the training set,
+                     * but in another category than the one corresponding to the current directory-->Instead of adding a duplicated
+                     * instance of it in another category, the name of the current category is added to the set of categories of the
+                     * document already present in the training set, and then a reference to its instance is added to the training set's
+                     * category currently being inspected, creating in this way a graph structure (as opposed to a tree one, where
+                     * every document can belong to one and only one category, which can be though as its father).
+                     * So, to summarize, for each document of the training set there is only one instance, but this can be put in more
+                     * than one category.
+                     * The documents already read are searched through the hash of their content, so only the (rare) documents with the
+                     * same hash must be compared with the method {@link Document#equals equals}.
+                     */
+                    List<Document> sameHashDocuments = documentsHashes.get(newDocument.getContentHash());
+                    if (sameHashDocuments == null) {
+                        sameHashDocuments = new ArrayList<Document>(1);
+                        documentsHashes.put(newDocument.getContentHash(), sameHashDocuments);
+                    }
+                    for (Document currentDocument : sameHashDocuments) {
+                        if (currentDocument.equals(newDocument)) {
+                            currentDocument.addCategory(category);
+                            /**
+                             * The variable 'nuovoDocumento' contains the reference to the document already present in the training set.
+                             */
+                            newDocument = currentDocument;
+                            addNewDocument = false;
+                            numberDuplicates++;
+                            break;
+                        }
+                    }
+                    /**
+                     * If I must add a new document to the training set-->I increment the variable that memorizes its total dimension.
+                     */
+                    if (addNewDocument) {
+                        numberDocuments++;
+                        sameHashDocuments.add(newDocument);
+                    }
+                    /**
+                     * In any case, a reference to an instance of the class 'Document' (a new one, or an already existing one) is added
+                     * to the current category.
+                     */
+                    documentsCurrentCategory.add(newDocument);
+                    documentsCurrentFiles[j] = newDocument;
+                }
+                trainingSet.add(documentsCurrentCategory);
+            }
+        } finally {
+            /**
+             * If there has been an error, the tasks not yet executed are cancelled.
+             */
+            executor.shutdownNow();
+        }
+        /**
+         * I make sure that the training set cannot be modified from this moment on.
+         */
+        trainingSet = Collections.unmodifiableSet(trainingSet);
+        if (snapshot != null && (numberReadFiles > 0 || numberFiles != snapshot.getNumberFiles())) {
+            /**
+             * The snapshot is written again only if some file has been added, modified or removed.
+             * It is only an optimization: If it can't be written (for example because the directory is read-only), the training
+             * set is still valid.
+             */
+            try {
+                snapshot.write(categories, files, documentsFiles);
+            } catch (Exception ex) {
+                System.err.println("The snapshot of the training set can't be written: " + ex);
+            }
+        }
+        return trainingSet;
+    }
+
+    /**
+     * This method reads a single file of the training set, and creates the corresponding instance of the class {@link Document}.
+     * It is executed by the threads of the pool, at the same time for different files.
+     *
+     * @param file              The file to read.
+     * @param category          The category of the directory containing the file.
+     * @return                  The document read from the file.
+     * @throws Exception
+     */
+    private Document readDocument(File file, String category) throws Exception {
+        /**
+         * A new instance of the class {@link Document} is created, which represents the current document read
+         * from the file system.
+         * The text is kept only if requested (otherwise, with a streaming scraper, the whole text is never created).
+         */
+        return Document.readDocument(file, category, configuration, isRetainingText);
+    }
+
+    /**
+     * Accessor method to read the number of different documents read by the last call of the method {@link #load load}.
+     *
+     * @return                  The number of different documents of the training set.
+     */
+    public int getNumberDocuments() {
+        return numberDocuments;
+    }
+
+    /**
+     * Accessor method to read the number of duplicated files found by the last call of the method {@link #load load}, that is
+     * the files whose document (title and text) was already read from another file.
+     *
+     * @return                  The number of duplicated files of the training set.
+     */
+    public int getNumberDuplicates() {
+        return numberDuplicates;
+    }
+
+    /**
+     * Accessor method to read the number of files that have been read and scraped by the last call of the method {@link #load load},
+     * while the documents of the other files have been taken from the snapshot of the training set.
+     *
+     * @return                  The number of files read.
+     */
+    public int getNumberReadFiles() {
+        return numberReadFiles;
+    }
+}
@@ -0,0 +1,362 @@
+package documentclassifier;
+
+import documentclassifier.Metriche.SparseVector;
+import documentclassifier.Metriche.TermDictionary;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class saves the documents read from the files of a training set into a binary file (the snapshot), inside the root of
+ * the training set directory, so that at the next generation of the training set only the files added or modified in the meantime
+ * must be scraped and transformed into histograms again.
+ * <p>
+ * The snapshot contains:
+ * <p>
+ *  - The settings that have produced the histograms (scraper, default charset, stopwords list with its dimension and date of
+ * last modification, stemmer): If they are different from the current ones, the whole snapshot is ignored.
+ * <p>
+ *  - The list of files of each category, with their dimension, their date of last modification and the index of their content:
+ * The content of a file is reused only if its dimension and its date of last modification haven't changed.
+ * <p>
+ *  - The vocabulary of the training set, and the different contents of the files (title, text, hash and histogram, as a sparse
+ * vector whose terms are identified by their position inside the vocabulary of the snapshot). The text is written only if it is
+ * kept in memory: The texts released by the loader are not read again from the files only to write them.
+ * <p>
+ * The files removed from the training set are simply not requested anymore, and the categories of each document are determined
+ * again by the loader, so the snapshot doesn't need to be updated when a file is removed or moved.
+ * <p>
+ * The file is read entirely in memory, and it is written on a temporary file that then substitutes the previous one, so that a
+ * generation interrupted in the middle never leaves an incomplete snapshot.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+class TrainingSetSnapshot {
+
+    /**
+     * The name of the snapshot file, inside the root of the training set directory.
+     * Since the loader considers only the subdirectories of the root, the file is not mistaken for a document.
+     */
+    public static final String FILENAME = ".documentclassifier.snapshot";
+    private static final int MAGICNUMBER = 0x44435353;
+    private static final int VERSION = 3;
+    private static final String CHARSET = "UTF-8";
+    private File file;
+    private String settings;
+    /**
+     * Map that associates the relative path of each file of the snapshot (category and name) to its entry.
+     */
+    private Map<String, FileEntry> entries = new HashMap<String, FileEntry>();
+
+    /**
+     * This constructor creates a new snapshot for the training set directory and the settings specified as input parameters.
+     *
+     * @param directory         The directory of the training set.
+     * @param configuration     The settings used to read and pre-process the documents.
+     */
+    public TrainingSetSnapshot(File directory, AnalysisConfiguration configuration) {
+        this.file = new File(directory, FILENAME);
+        StringBuilder description = new StringBuilder();
+        description.append(configuration.getScraper().getClass().getName()).append('|');
+        description.append(configuration.getDefaultCharset().name()).append('|');
+        description.append(configuration.isRemovalStopWords()).append('|');
+        if (configuration.isRemovalStopWords()) {
+            File stopWordsList = new File(configuration.getStopWordsList());
+            description.append(stopWordsList.getAbsolutePath()).append('|');
+            description.append(stopWordsList.length()).append('|').append(stopWordsList.lastModified()).append('|');
+        }
+        description.append(configuration.isStemming()).append('|');
+        if (configuration.isStemming()) {
+            description.append(configuration.getStemmer());
+        }
+        this.settings = description.toString();
+    }
+
+    /**
+     * This method reads the snapshot, if this exists and it has been written with the same settings.
+     * After that, the documents of the files that haven't been modified can be obtained through the method
+     * {@link #getDocument getDocument}.
+     *
+     * @return                  True if the snapshot is valid and has been read, false otherwise.
+     */
+    public boolean read() {
+        entries.clear();
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            FileInputStream FIS = new FileInputStream(file);
+            try {
+                /**
+                 * The file is read entirely in a buffer on the heap, instead of mapping it in memory: A mapping
+                 * is released only by the garbage collector, and until then (on Windows) the snapshot couldn't be
+                 * substituted or deleted.
+                 */
+                FileChannel channel = FIS.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new EOFException();
+                    }
+                }
+                buffer.flip();
+                return read(buffer);
+            } finally {
+                FIS.close();
+            }
+        } catch (Exception ex) {
+            /**
+             * A damaged snapshot is simply ignored: The training set is read again from the files.
+             */
+            entries.clear();
+            return false;
+        }
+    }
+
+    private boolean read(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGICNUMBER || buffer.getInt() != VERSION || !readString(buffer).equals(settings)) {
+            return false;
+        }
+        /**
+         * List of files, whose contents are associated after having read them.
+         */
+        List<String> keys = new ArrayList<String>();
+        List<long[]> attributes = new ArrayList<long[]>();
+        int numberCategories = buffer.getInt();
+        for (int i = 0; i < numberCategories; i++) {
+            String category = readString(buffer);
+            int numberFiles = buffer.getInt();
+            for (int j = 0; j < numberFiles; j++) {
+                keys.add(getKey(category, readString(buffer)));
+                attributes.add(new long[]{buffer.getLong(), buffer.getLong(), buffer.getInt()});
+            }
+        }
+        /**
+         * Vocabulary: For each term of the snapshot, its identifier inside the global dictionary.
+         */
+        TermDictionary dictionary = TermDictionary.getDictionary();
+        int[] identifiers = new int[buffer.getInt()];
+        for (int i = 0; i < identifiers.length; i++) {
+            identifiers[i] = dictionary.getIdentifier(readString(buffer));
+        }
+        /**
+         * Contents of the files.
+         */
+        Content[] contents = new Content[buffer.getInt()];
+        int[] terms = new int[0];
+        float[] weights = new float[0];
+        for (int i = 0; i < contents.length; i++) {
+            String title = readString(buffer);
+            String text = readString(buffer);
+            long contentHash = buffer.getLong();
+            int numberTerms = buffer.getInt();
+            if (numberTerms > terms.length) {
+                terms = new int[numberTerms];
+                weights = new float[numberTerms];
+            }
+            for (int j = 0; j < numberTerms; j++) {
+                terms[j] = identifiers[buffer.getInt()];
+                weights[j] = buffer.getFloat();
+            }
+            contents[i] = new Content(title, text, contentHash, new SparseVector(terms, weights, numberTerms));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            long[] currentAttributes = attributes.get(i);
+            entries.put(keys.get(i), new FileEntry(currentAttributes[0], currentAttributes[1], contents[(int) currentAttributes[2]]));
+        }
+        return true;
+    }
+
+    /**
+     * This method returns the document read from a file of the training set, if the file is inside the snapshot and it hasn't
+     * been modified after the snapshot has been written.
+     * The document is a new instance, that belongs only to the category specified as input parameter.
+     *
+     * @param category          The category of the directory containing the file.
+     * @param F                 The file of the training set.
+     * @return                  The document read from the file, or null if the file must be read again.
+     * @throws IOException
+     */
+    public Document getDocument(String category, File F) throws IOException {
+        FileEntry entry = entries.get(getKey(category, F.getName()));
+        if (entry == null || entry.length != F.length() || entry.lastModified != F.lastModified()) {
+            return null;
+        }
+        Content content = entry.content;
+        return new Document(content.title, content.text, new HashSet<String>(Collections.singleton(category)), F.getCanonicalPath(),
+                content.contentHash, content.histogram);
+    }
+
+    /**
+     * This method returns the number of files inside the snapshot read by the method {@link #read read}.
+     *
+     * @return                  The number of files of the snapshot.
+     */
+    public int getNumberFiles() {
+        return entries.size();
+    }
+
+    /**
+     * This method writes the documents read from the files of a training set into the snapshot.
+     *
+     * @param categories        The names of the categories of the training set, in the order they have been listed.
+     * @param files             The files of each category, in the order they have been listed.
+     * @param documents         The document corresponding to each file, in the same order: The files with the same content must
+     *                          correspond to the same instance.
+     * @throws IOException
+     */
+    public void write(List<String> categories, List<File[]> files, List<Document[]> documents) throws IOException {
+        /**
+         * First the different documents are numbered, and the terms they use are collected.
+         */
+        Map<Document, Integer> documentsIndexes = new IdentityHashMap<Document, Integer>();
+        List<Document> differentDocuments = new ArrayList<Document>();
+        TermDictionary dictionary = TermDictionary.getDictionary();
+        int[] localIdentifiers = new int[dictionary.size()];
+        Arrays.fill(localIdentifiers, -1);
+        List<String> vocabulary = new ArrayList<String>();
+        for (Document[] documentsCurrentCategory : documents) {
+            for (Document currentDocument : documentsCurrentCategory) {
+                if (documentsIndexes.containsKey(currentDocument)) {
+                    continue;
+                }
+                documentsIndexes.put(currentDocument, differentDocuments.size());
+                differentDocuments.add(currentDocument);
+                SparseVector histogram = currentDocument.getHistogram();
+                if (histogram == null) {
+                    throw new IOException("The histogram of the document " + currentDocument.getPath() + " has not been created");
+                }
+                for (int i = 0; i < histogram.size(); i++) {
+                    int term = histogram.getTerm(i);
+                    if (localIdentifiers[term] == -1) {
+                        localIdentifiers[term] = vocabulary.size();
+                        vocabulary.add(dictionary.getTerm(term));
+                    }
+                }
+            }
+        }
+
+        File temporaryFile = new File(file.getParentFile(), FILENAME + ".tmp");
+        DataOutputStream DOS = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16));
+        try {
+            DOS.writeInt(MAGICNUMBER);
+            DOS.writeInt(VERSION);
+            writeString(DOS, settings);
+            DOS.writeInt(categories.size());
+            for (int i = 0; i < categories.size(); i++) {
+                writeString(DOS, categories.get(i));
+                DOS.writeInt(files.get(i).length);
+                for (int j = 0; j < files.get(i).length; j++) {
+                    File F = files.get(i)[j];
+                    writeString(DOS, F.getName());
+                    DOS.writeLong(F.length());
+                    DOS.writeLong(F.lastModified());
+                    DOS.writeInt(documentsIndexes.get(documents.get(i)[j]));
+                }
+            }
+            DOS.writeInt(vocabulary.size());
+            for (String term : vocabulary) {
+                writeString(DOS, term);
+            }
+            DOS.writeInt(differentDocuments.size());
+            for (Document currentDocument : differentDocuments) {
+                writeString(DOS, currentDocument.getTitle());
+                /**
+                 * The method getText would read again from its file the text of a document that doesn't keep it in memory.
+                 */
+                writeString(DOS, currentDocument.isTextRetained() ? currentDocument.getText() : null);
+                DOS.writeLong(currentDocument.getContentHash());
+                SparseVector histogram = currentDocument.getHistogram();
+                DOS.writeInt(histogram.size());
+                for (int i = 0; i < histogram.size(); i++) {
+                    DOS.writeInt(localIdentifiers[histogram.getTerm(i)]);
+                    DOS.writeFloat(histogram.getWeight(i));
+                }
+            }
+        } finally {
+            DOS.close();
+        }
+        if (!temporaryFile.renameTo(file)) {
+            file.delete();
+            if (!temporaryFile.renameTo(file)) {
+                temporaryFile.delete();
+                throw new IOException("The snapshot " + file + " can't be written");
+            }
+        }
+    }
+
+    private static String getKey(String category, String name) {
+        return category + File.separator + name;
+    }
+
+    /**
+     * This method writes a string (that can also be null) as its length in bytes, followed by its UTF-8 bytes.
+     */
+    private static void writeString(DataOutputStream DOS, String value) throws IOException {
+        if (value == null) {
+            DOS.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(CHARSET);
+            DOS.writeInt(bytes.length);
+            DOS.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    /**
+     * The content of a file read from the snapshot.
+     */
+    private static class Content {
+
+        private final String title;
+        private final String text;
+        private final long contentHash;
+        private final SparseVector histogram;
+
+        private Content(String title, String text, long contentHash, SparseVector histogram) {
+            this.title = title;
+            this.text = text;
+            this.contentHash = contentHash;
+            this.histogram = histogram;
+        }
+    }
+
+    /**
+     * The attributes of a file of the snapshot, used to detect if it has been modified, and its content.
+     */
+    private static class FileEntry {
+
+        private final long length;
+        private final long lastModified;
+        private final Content content;
+
+        private FileEntry(long length, long lastModified, Content content) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package documentclassifier;
+
+import documentclassifier.Metriche.TopKSelector;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class performs the K-Fold cross validation of the training set, for all the values of K for the K-NN inside an interval.
+ * <p>
+ * Each document of the control sets is ranked only once, against the training set of its fold: Only its KNNMaximum nearest
+ * documents are selected, and from this list the categories estimated by the K-NN for all the values of K are determined in
+ * a single pass (see {@link KNNClassifier#determineCategories determineCategories}).
+ * The folds, and the documents of each control set, are ranked in parallel by a pool of threads: The training set of each fold
+ * is compiled into an inverted index by one of the threads, and then its control set is divided between all of them.
+ * <p>
+ * The partitioning of the training set in folds is not done by this class, so the validation gives the same results of the
+ * one done ranking the documents one at a time.
+ * <p>
+ * Instead of an inverted index for each fold, the engine can use a {@link SimilarityMatrix} of the whole training set, calculated
+ * only once: The nearest documents of each query are then selected among the ones of the training set of its fold, reading the
+ * values already calculated, so the validation can be repeated with any partitioning without ranking the documents again.
+ * <p>
+ * The leave-one-out validation (see {@link #validateLeaveOneOut validateLeaveOneOut}) is not done as a K-Fold with a fold for
+ * each document, but ranking each document once against the index of the whole training set, from which only the document
+ * itself is excluded.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+class ValidationEngine {
+
+    /**
+     * The maximum number of documents of a control set ranked by a single task: The bigger groups are divided between
+     * more tasks, so that all the threads have something to do until the end.
+     */
+    private static final int DOCUMENTSPERTASK = 16;
+    /**
+     * The name of the metric used to calculate the distance between the documents.
+     */
+    private String metric;
+    private int numberThreads;
+
+    /**
+     * This constructor creates a new validation engine.
+     *
+     * @param metric            The name of the metric ("Bhattacharrya" or "TF-IDF").
+     * @param numberThreads     The number of threads that rank the documents in parallel.
+     */
+    public ValidationEngine(String metric, int numberThreads) {
+        this.metric = metric;
+        this.numberThreads = Math.max(1, numberThreads);
+    }
+
+    /**
+     * This method validates the training set, already partitioned in folds: Each fold is used in turn as the control set,
+     * and the other ones as the training set.
+     *
+     * @param partitionedTrainingSet    The folds of the training set.
+     * @param KNNMinimum                The minimum value of K for the K-NN.
+     * @param KNNMaximum                The maximum value of K for the K-NN.
+     * @return                          The categories estimated for each document of the control sets, and the classification
+     *                                  error for each value of K.
+     * @throws InterruptedException     If the current thread is interrupted while the documents are being ranked.
+     * @throws ExecutionException       If the ranking of a document fails.
+     */
+    public Result validate(Set<Set<Document>> partitionedTrainingSet, int KNNMinimum, int KNNMaximum) throws InterruptedException, ExecutionException {
+        return validate(null, partitionedTrainingSet, KNNMinimum, KNNMaximum);
+    }
+
+    /**
+     * This method validates the training set, already partitioned in folds, selecting the nearest documents of each query
+     * from a similarity matrix of the whole training set, instead of ranking them against an inverted index of each fold.
+     *
+     * @param matrix                    The similarity matrix of the whole training set, calculated with the metric of this
+     *                                  engine, or null if the documents must be ranked against the training set of each fold.
+     * @param partitionedTrainingSet    The folds of the training set.
+     * @param KNNMinimum                The minimum value of K for the K-NN.
+     * @param KNNMaximum                The maximum value of K for the K-NN.
+     * @return                          The categories estimated for each document of the control sets, and the classification
+     *                                  error for each value of K.
+     * @throws InterruptedException     If the current thread is interrupted while the documents are being ranked.
+     * @throws ExecutionException       If the ranking of a document fails (for example because it is not present in the matrix).
+     */
+    public Result validate(SimilarityMatrix matrix, Set<Set<Document>> partitionedTrainingSet, int KNNMinimum, int KNNMaximum) throws InterruptedException, ExecutionException {
+        if (matrix != null && !matrix.getMetric().equals(metric)) {
+            throw new IllegalArgumentException("The similarity matrix has been calculated with the metric " + matrix.getMetric());
+        }
+        final Result result = new Result(partitionedTrainingSet, KNNMinimum, KNNMaximum);
+        final List<FoldTask> foldTasks = new ArrayList<FoldTask>();
+        int fold = 0;
+        for (Set<Document> currentControlSet : partitionedTrainingSet) {
+            foldTasks.add(new FoldTask(matrix, partitionedTrainingSet, currentControlSet, result, fold++));
+        }
+        execute(new RecursiveAction() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(foldTasks);
+            }
+        });
+        result.countErrors();
+        return result;
+    }
+
+    /**
+     * This method performs the leave-one-out validation of the training set: Each document is used in turn as the query,
+     * and all the other documents as the training set.
+     * The result contains a single control set, with all the documents of the training set in the order of their identifiers
+     * inside the index.
+     * <p>
+     * All the documents are ranked against the same index, so with the TF-IDF the document frequencies are the ones of the
+     * whole training set, and not of the training set without the query.
+     *
+     * @param trainingSet               The whole training set, compiled into an inverted index.
+     * @param KNNMinimum                The minimum value of K for the K-NN.
+     * @param KNNMaximum                The maximum value of K for the K-NN.
+     * @return                          The categories estimated for each document of the training set, and the classification
+     *                                  error for each value of K.
+     * @throws InterruptedException     If the current thread is interrupted while the documents are being ranked.
+     * @throws ExecutionException       If the ranking of a document fails.
+     */
+    public Result validateLeaveOneOut(TrainingSetIndex trainingSet, int KNNMinimum, int KNNMaximum) throws InterruptedException, ExecutionException {
+        Set<Set<Document>> controlSets = new HashSet<Set<Document>>();
+        controlSets.add(new LinkedHashSet<Document>(trainingSet.getDocuments()));
+        Result result = new Result(controlSets, KNNMinimum, KNNMaximum);
+        result.isLeaveOneOut = true;
+        execute(new RankTask(trainingSet, null, null, result, 0, 0, trainingSet.size()));
+        result.countErrors();
+        return result;
+    }
+
+    /**
+     * This method executes a task inside a new pool of threads, waiting for its end.
+     */
+    private void execute(RecursiveAction task) throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(numberThreads);
+        try {
+            Future<?> validation = pool.submit(task);
+            /**
+             * The wait can be interrupted (for example if the user stops the validation): In this case the pool is closed,
+             * and the tasks not yet started are not executed.
+             */
+            validation.get();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Task that compiles the training set of a fold into an inverted index (or, if a similarity matrix is used, marks its
+     * documents inside the matrix), and then ranks the documents of its control set.
+     */
+    private class FoldTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private SimilarityMatrix matrix;
+        private Set<Set<Document>> partitionedTrainingSet;
+        private Set<Document> controlSet;
+        private Result result;
+        private int fold;
+
+        private FoldTask(SimilarityMatrix matrix, Set<Set<Document>> partitionedTrainingSet, Set<Document> controlSet, Result result, int fold) {
+            this.matrix = matrix;
+            this.partitionedTrainingSet = partitionedTrainingSet;
+            this.controlSet = controlSet;
+            this.result = result;
+            this.fold = fold;
+        }
+
+        @Override
+        protected void compute() {
+            Set<Set<Document>> currentTrainingSet = new HashSet<Set<Document>>(partitionedTrainingSet);
+            currentTrainingSet.remove(controlSet);
+            if (matrix == null) {
+                TrainingSetIndex currentTrainingSetIndex = new TrainingSetIndex(currentTrainingSet);
+                new RankTask(currentTrainingSetIndex, null, null, result, fold, 0, result.controlSets.get(fold).size()).invoke();
+            } else {
+                boolean[] isTrainingDocument = new boolean[matrix.size()];
+                for (Set<Document> subSetTrainingSet : currentTrainingSet) {
+                    for (Document currentDocument : subSetTrainingSet) {
+                        isTrainingDocument[matrix.getIdentifier(currentDocument)] = true;
+                    }
+                }
+                new RankTask(null, matrix, isTrainingDocument, result, fold, 0, result.controlSets.get(fold).size()).invoke();
+            }
+        }
+    }
+
+    /**
+     * Task that ranks a group of documents of a control set, dividing it in two halves (ranked in parallel) if it is too big.
+     * The documents are ranked against the inverted index of the training set of the fold, or selected from the similarity
+     * matrix among the documents of the training set of the fold.
+     * In the leave-one-out validation the control set is the training set itself (in the same order): Each query is then
+     * excluded from its own nearest documents.
+     */
+    private class RankTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private TrainingSetIndex trainingSet;
+        private SimilarityMatrix matrix;
+        private boolean[] isTrainingDocument;
+        private Result result;
+        private int fold, start, end;
+
+        private RankTask(TrainingSetIndex trainingSet, SimilarityMatrix matrix, boolean[] isTrainingDocument, Result result, int fold, int start, int end) {
+            this.trainingSet = trainingSet;
+            this.matrix = matrix;
+            this.isTrainingDocument = isTrainingDocument;
+            this.result = result;
+            this.fold = fold;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > DOCUMENTSPERTASK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new RankTask(trainingSet, matrix, isTrainingDocument, result, fold, start, middle),
+                        new RankTask(trainingSet, matrix, isTrainingDocument, result, fold, middle, end));
+                return;
+            }
+            List<Document> controlSet = result.controlSets.get(fold);
+            for (int query = start; query < end; query++) {
+                Document[] neighbours;
+                if (matrix != null) {
+                    neighbours = matrix.rank(controlSet.get(query), isTrainingDocument, result.KNNMaximum);
+                } else {
+                    double[] distances = KNNClassifier.calculateDistances(trainingSet, controlSet.get(query).getHistogram(), metric);
+                    int numberNeighbours = result.KNNMaximum;
+                    if (result.isLeaveOneOut) {
+                        /**
+                         * The query has the same identifier inside the index: Its value becomes the worst of all (NaN), and
+                         * it is never selected, since at most the other documents are selected.
+                         */
+                        distances[query] = Double.NaN;
+                        numberNeighbours = Math.min(numberNeighbours, distances.length - 1);
+                    }
+                    int[] nearestDocuments = TopKSelector.selectTopK(distances, numberNeighbours, metric.equals("Bhattacharrya"));
+                    neighbours = new Document[nearestDocuments.length];
+                    for (int i = 0; i < nearestDocuments.length; i++) {
+                        neighbours[i] = trainingSet.getDocuments().get(nearestDocuments[i]);
+                    }
+                }
+                result.estimatedCategories[fold][query] = KNNClassifier.determineCategories(neighbours, result.KNNMinimum, result.KNNMaximum);
+            }
+        }
+    }
+
+    /**
+     * The result of a validation: The estimated categories of each document of the control sets, and the number of
+     * classification errors for each value of K.
+     */
+    static class Result {
+
+        private List<List<Document>> controlSets;
+        private int KNNMinimum, KNNMaximum;
+        private String[][][] estimatedCategories;
+        private int[] numberErrors;
+        private int numberDocuments;
+        private boolean isLeaveOneOut;
+
+        private Result(Set<Set<Document>> partitionedTrainingSet, int KNNMinimum, int KNNMaximum) {
+            this.KNNMinimum = KNNMinimum;
+            this.KNNMaximum = KNNMaximum;
+            controlSets = new ArrayList<List<Document>>(partitionedTrainingSet.size());
+            for (Set<Document> currentControlSet : partitionedTrainingSet) {
+                controlSets.add(new ArrayList<Document>(currentControlSet));
+                numberDocuments += currentControlSet.size();
+            }
+            estimatedCategories = new String[controlSets.size()][][];
+            for (int fold = 0; fold < controlSets.size(); fold++) {
+                estimatedCategories[fold] = new String[controlSets.get(fold).size()][];
+            }
+        }
+
+        /**
+         * This method counts the classification errors for all the values of K, in a single pass on the control sets.
+         */
+        private void countErrors() {
+            numberErrors = new int[KNNMaximum - KNNMinimum + 1];
+            for (int fold = 0; fold < controlSets.size(); fold++) {
+                for (int query = 0; query < controlSets.get(fold).size(); query++) {
+                    Set<String> effectiveCategories = controlSets.get(fold).get(query).getCategories();
+                    for (int i = 0; i < numberErrors.length; i++) {
+                        if (!effectiveCategories.contains(estimatedCategories[fold][query][i])) {
+                            numberErrors[i]++;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * This method returns if the result is the one of a leave-one-out validation, whose only control set contains all
+         * the documents of the training set.
+         *
+         * @return                  True for a leave-one-out validation, false for a K-Fold cross validation.
+         */
+        public boolean isLeaveOneOut() {
+            return isLeaveOneOut;
+        }
+
+        /**
+         * Accessor method to read the minimum value of K for which the documents have been classified.
+         *
+         * @return                  The minimum value of K for the K-NN.
+         */
+        public int getKNNMinimum() {
+            return KNNMinimum;
+        }
+
+        /**
+         * Accessor method to read the maximum value of K for which the documents have been classified.
+         *
+         * @return                  The maximum value of K for the K-NN.
+         */
+        public int getKNNMaximum() {
+            return KNNMaximum;
+        }
+
+        /**
+         * This method returns the number of documents of all the control sets.
+         *
+         * @return                  The number of documents that have been classified.
+         */
+        public int getNumberDocuments() {
+            return numberDocuments;
+        }
+
+        /**
+         * This method returns the number of folds, that is the number of control sets.
+         *
+         * @return                  The number of folds.
+         */
+        public int getNumberFolds() {
+            return controlSets.size();
+        }
+
+        /**
+         * This method returns the documents of a control set, in the order used by the other methods of this class.
+         *
+         * @param fold              The index of the fold, in the order in which the folds have been passed to the engine.
+         * @return                  The documents of the control set of the fold.
+         */
+        public List<Document> getControlSet(int fold) {
+            return controlSets.get(fold);
+        }
+
+        /**
+         * This method returns the category estimated by the K-NN for a document of a control set.
+         *
+         * @param fold              The index of the fold.
+         * @param query             The index of the document inside the control set.
+         * @param K                 The value of K for the K-NN.
+         * @return                  The name of the estimated category.
+         */
+        public String getEstimatedCategory(int fold, int query, int K) {
+            return estimatedCategories[fold][query][K - KNNMinimum];
+        }
+
+        /**
+         * This method returns the number of documents of the control sets whose category has been estimated wrongly.
+         *
+         * @param K                 The value of K for the K-NN.
+         * @return                  The number of classification errors.
+         */
+        public int getNumberErrors(int K) {
+            return numberErrors[K - KNNMinimum];
+        }
+
+        /**
+         * This method returns the classification error, as a percentage of the documents of all the control sets.
+         *
+         * @param K                 The value of K for the K-NN.
+         * @return                  The classification error (between 0 and 100).
+         */
+        public double getClassificationError(int K) {
+            return ((double) numberErrors[K - KNNMinimum] / numberDocuments) * 100;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package documentclassifier;
+
+import java.util.List;
+
+/**
+ * Interface that receives the events of a validation from a {@link ValidationService}, for example to show its progress in
+ * the graphical interface or to write it in a log file.
+ * <p>
+ * The methods are called by the thread that executes the validation, and not by the Event Dispatch Thread: An implementation
+ * that updates the graphical interface must pass the events to it. The progress and the classified documents are notified
+ * in groups, so the listener is not called for each document.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+interface ValidationListener {
+
+    /**
+     * Method called once, after the training set has been partitioned and before its documents are ranked.
+     *
+     * @param   KFold           The number of folds (for the leave-one-out validation, the number of documents).
+     * @param   KNNMinimum      The minimum value of K for the K-NN.
+     * @param   KNNMaximum      The maximum value of K for the K-NN.
+     */
+    public void rankingStarted(int KFold, int KNNMinimum, int KNNMaximum);
+
+    /**
+     * Method called when the classification of the control sets with a new value of K begins.
+     *
+     * @param   K               The value of K for the K-NN.
+     */
+    public void classificationStarted(int K);
+
+    /**
+     * Method called for each group of documents of the control sets classified with the current value of K, in the
+     * order they have been classified.
+     *
+     * @param   K               The value of K for the K-NN.
+     * @param   classifications The outcome of the classification of each document of the group.
+     */
+    public void documentsClassified(int K, List<ValidationService.Classification> classifications);
+
+    /**
+     * Method called when the classification error for a value of K has been calculated.
+     *
+     * @param   K               The value of K for the K-NN.
+     * @param   KFold           The number of folds.
+     * @param   classificationError The classification error (between 0 and 100).
+     */
+    public void classificationErrorCalculated(int K, int KFold, double classificationError);
+
+    /**
+     * Method called periodically, to notify how many documents have been classified until now.
+     *
+     * @param   completedIterations The number of classifications done (one for each document and each value of K).
+     * @param   totalIterations     The total number of classifications of the validation.
+     */
+    public void progress(int completedIterations, int totalIterations);
+}
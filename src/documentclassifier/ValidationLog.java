@@ -0,0 +1,158 @@
+package documentclassifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * This class writes the events of a validation to a log file, through an {@link AsyncLogSink}, in a structured format that
+ * doesn't depend on the language of the graphical interface: The records can therefore be processed directly by other
+ * programs, without searching the localized messages.
+ * <p>
+ * The format is chosen from the name of the file: If it ends with ".json" or ".jsonl" each record is a JSON object on its
+ * own line (JSON lines), otherwise each record is a line of fields separated by tabs (TSV), whose first field is the type
+ * of the record. If the name ends also with ".gz" (for example "LogFile.tsv.gz"), the file is compressed with GZIP.
+ * <p>
+ * The types of record, with their fields in the order used by the TSV format, are:
+ * <ul>
+ * <li>validation: date, metric, partitioning ("stratified", "random" or "leave-one-out"), KFold, KNNMinimum, KNNMaximum</li>
+ * <li>document: K, fold, index (inside the fold), correct (true or false), numberErrors (for this K, until this document),
+ *     estimatedCategory, effectiveCategories (separated by commas), path</li>
+ * <li>error: K, KFold, classificationError (percentage)</li>
+ * <li>result: K (the optimal one), classificationError, elapsedTime (ms)</li>
+ * </ul>
+ * For example, the classification error for each value of K can be extracted from a TSV log with
+ * <code>awk -F'\t' '$1=="error" {print $2"\t"$4}'</code>.
+ * The folds and the documents are numbered starting from 1, and the numbers are written with the point as decimal separator.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+final class ValidationLog implements ValidationListener {
+
+    private final AsyncLogSink sink;
+    private final boolean isJSON;
+    private final String metric;
+    private final String partitioning;
+
+    /**
+     * This constructor opens the log file.
+     *
+     * @param path              The path of the log file, whose name determines the format and the compression.
+     * @param append            True if the records must be added at the end of the file, false if it must be overwritten.
+     * @param metric            The name of the metric used by the validation.
+     * @param partitioning      The partitioning of the training set: "stratified", "random" or "leave-one-out".
+     * @throws IOException      If the file can't be opened.
+     */
+    public ValidationLog(String path, boolean append, String metric, String partitioning) throws IOException {
+        String name = path.toLowerCase(Locale.ENGLISH);
+        boolean compressed = name.endsWith(".gz");
+        if (compressed) {
+            name = name.substring(0, name.length() - ".gz".length());
+        }
+        this.isJSON = name.endsWith(".json") || name.endsWith(".jsonl");
+        this.metric = metric;
+        this.partitioning = partitioning;
+        this.sink = new AsyncLogSink(new File(path), append, compressed, AsyncLogSink.DEFAULTCAPACITY);
+    }
+
+    public void rankingStarted(int KFold, int KNNMinimum, int KNNMaximum) {
+        String date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date());
+        if (isJSON) {
+            sink.write("{\"type\":\"validation\",\"date\":" + JSON.quote(date) + ",\"metric\":" + JSON.quote(metric) + ",\"partitioning\":" + JSON.quote(partitioning)
+                    + ",\"KFold\":" + KFold + ",\"KNNMinimum\":" + KNNMinimum + ",\"KNNMaximum\":" + KNNMaximum + "}");
+        } else {
+            sink.write("validation\t" + date + "\t" + field(metric) + "\t" + partitioning + "\t" + KFold + "\t" + KNNMinimum + "\t" + KNNMaximum);
+        }
+    }
+
+    public void classificationStarted(int K) {
+    }
+
+    public void documentsClassified(int K, List<ValidationService.Classification> classifications) {
+        StringBuilder record = new StringBuilder();
+        for (ValidationService.Classification currentClassification : classifications) {
+            record.setLength(0);
+            Document currentDocument = currentClassification.getDocument();
+            if (isJSON) {
+                record.append("{\"type\":\"document\",\"K\":").append(K).append(",\"fold\":").append(currentClassification.getFold() + 1)
+                        .append(",\"index\":").append(currentClassification.getIndex() + 1).append(",\"correct\":").append(currentClassification.isCorrect())
+                        .append(",\"numberErrors\":").append(currentClassification.getNumberErrors()).append(",\"estimatedCategory\":")
+                        .append(JSON.quote(currentClassification.getEstimatedCategory())).append(",\"effectiveCategories\":[");
+                for (Iterator<String> iterator = currentDocument.getCategories().iterator(); iterator.hasNext();) {
+                    record.append(JSON.quote(iterator.next()));
+                    if (iterator.hasNext()) {
+                        record.append(',');
+                    }
+                }
+                record.append("],\"path\":").append(JSON.quote(currentDocument.getPath())).append('}');
+            } else {
+                record.append("document\t").append(K).append('\t').append(currentClassification.getFold() + 1).append('\t').append(currentClassification.getIndex() + 1)
+                        .append('\t').append(currentClassification.isCorrect()).append('\t').append(currentClassification.getNumberErrors())
+                        .append('\t').append(field(currentClassification.getEstimatedCategory())).append('\t').append(field(join(currentDocument.getCategories())))
+                        .append('\t').append(field(currentDocument.getPath()));
+            }
+            sink.write(record.toString());
+        }
+    }
+
+    public void classificationErrorCalculated(int K, int KFold, double classificationError) {
+        if (isJSON) {
+            sink.write("{\"type\":\"error\",\"K\":" + K + ",\"KFold\":" + KFold + ",\"classificationError\":" + JSON.number(classificationError) + "}");
+        } else {
+            sink.write("error\t" + K + "\t" + KFold + "\t" + classificationError);
+        }
+    }
+
+    public void progress(int completedIterations, int totalIterations) {
+    }
+
+    /**
+     * This method writes the result of the validation.
+     *
+     * @param K                     The optimal value of K for the K-NN.
+     * @param classificationError   The corresponding classification error.
+     * @param elapsedTime           The duration of the validation, in ms.
+     */
+    public void result(int K, double classificationError, long elapsedTime) {
+        if (isJSON) {
+            sink.write("{\"type\":\"result\",\"K\":" + K + ",\"classificationError\":" + JSON.number(classificationError) + ",\"elapsedTime\":" + elapsedTime + "}");
+        } else {
+            sink.write("result\t" + K + "\t" + classificationError + "\t" + elapsedTime);
+        }
+    }
+
+    /**
+     * This method writes the records still waiting, and closes the log file.
+     *
+     * @throws IOException      If the records couldn't be written.
+     */
+    public void close() throws IOException {
+        sink.close();
+    }
+
+    private static String join(Set<String> categories) {
+        StringBuilder joined = new StringBuilder();
+        for (String category : categories) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(category);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * This method replaces the tabs and the line separators of a TSV field with spaces.
+     */
+    private static String field(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
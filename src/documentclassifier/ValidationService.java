@@ -0,0 +1,350 @@
+package documentclassifier;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This class performs the validation of the training set (K-Fold cross validation or leave-one-out), to determine the
+ * optimal value of K for the K-NN, without depending on the graphical interface: It can therefore also be used without
+ * a display, and more validations can be executed in parallel, each one by its own instance of this class.
+ * <p>
+ * The validation is done in these steps:
+ * 1 - The training set is partitioned (with random or stratified sampling) in 'K-Fold' subsets (except for the
+ *     leave-one-out validation, in which each document is ranked against all the other ones of the training set).
+ * 2 - Each document of the control sets is ranked only once, by a {@link ValidationEngine}.
+ * 3 - For each value of K-NN, from the minimum to the maximum one, the category estimated for each document is compared
+ *     with its effective ones, and the classification error is calculated.
+ * 4 - The value of K corresponding to the minimum classification error is chosen.
+ * <p>
+ * The progress of the validation and its results are notified to the registered {@link ValidationListener}s: The progress
+ * at most every {@value #PROGRESSINTERVAL} ms, and the classified documents in groups of at most {@value #BATCHSIZE}.
+ *
+ * @author      Salvo Danilo Giuffrida (salvod.giuffrida@gmail.com)
+ */
+class ValidationService {
+
+    /**
+     * The minimum interval (in ms) between two notifications of the progress.
+     */
+    static final long PROGRESSINTERVAL = 100;
+    /**
+     * The maximum number of classified documents notified together.
+     */
+    static final int BATCHSIZE = 256;
+    private final List<ValidationListener> listeners = new CopyOnWriteArrayList<ValidationListener>();
+    private final ValidationEngine engine;
+    private SimilarityMatrix similarityMatrix;
+
+    /**
+     * This constructor creates a new validation service.
+     *
+     * @param metric            The name of the metric ("Bhattacharrya" or "TF-IDF").
+     * @param numberThreads     The number of threads that rank the documents in parallel.
+     */
+    public ValidationService(String metric, int numberThreads) {
+        engine = new ValidationEngine(metric, numberThreads);
+    }
+
+    /**
+     * This method registers a listener, which will receive the events of the following validations.
+     *
+     * @param listener          The listener to register.
+     */
+    public void addValidationListener(ValidationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * This method removes a listener previously registered.
+     *
+     * @param listener          The listener to remove.
+     */
+    public void removeValidationListener(ValidationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * This method sets the similarity matrix of the training set, from which the K-Fold cross validation selects the
+     * nearest documents of each query, instead of ranking them against the training set of each fold.
+     *
+     * @param similarityMatrix  The similarity matrix of the whole training set, or null to rank the documents again.
+     */
+    public void setSimilarityMatrix(SimilarityMatrix similarityMatrix) {
+        this.similarityMatrix = similarityMatrix;
+    }
+
+    /**
+     * This method performs the K-Fold cross validation of the training set.
+     *
+     * @param trainingSet               The training set, represented like a set of subsets of documents (one for each category).
+     * @param trainingSetSize           The number of different documents of the training set.
+     * @param KFold                     The number of folds.
+     * @param isStratified              True if the folds must be created with stratified sampling, false for random sampling.
+     * @param KNNMinimum                The minimum value of K for the K-NN.
+     * @param KNNMaximum                The maximum value of K for the K-NN.
+     * @return                          An entry with the optimal value of K as key, and the corresponding classification error
+     *                                  as value.
+     * @throws InterruptedException     If the current thread is interrupted during the validation.
+     * @throws ExecutionException       If the ranking of a document fails.
+     */
+    public Entry<Integer, Double> validate(Set<Set<Document>> trainingSet, int trainingSetSize, int KFold, boolean isStratified,
+            int KNNMinimum, int KNNMaximum) throws InterruptedException, ExecutionException {
+        Set<Set<Document>> partitionedTrainingSet = partition(trainingSet, trainingSetSize, KFold, isStratified);    //1
+        for (ValidationListener listener : listeners) {
+            listener.rankingStarted(KFold, KNNMinimum, KNNMaximum);
+        }
+        ValidationEngine.Result result = engine.validate(similarityMatrix, partitionedTrainingSet, KNNMinimum, KNNMaximum);    //2
+        return evaluate(result, KFold);
+    }
+
+    /**
+     * This method performs the leave-one-out validation of the training set.
+     *
+     * @param trainingSet               The whole training set, compiled into an inverted index.
+     * @param KNNMinimum                The minimum value of K for the K-NN.
+     * @param KNNMaximum                The maximum value of K for the K-NN: If it is not less than the number of documents,
+     *                                  the number of documents minus one is used.
+     * @return                          An entry with the optimal value of K as key, and the corresponding classification error
+     *                                  as value.
+     * @throws InterruptedException     If the current thread is interrupted during the validation.
+     * @throws ExecutionException       If the ranking of a document fails.
+     */
+    public Entry<Integer, Double> validateLeaveOneOut(TrainingSetIndex trainingSet, int KNNMinimum, int KNNMaximum) throws InterruptedException, ExecutionException {
+        int KFold = trainingSet.size();
+        KNNMaximum = Math.min(KNNMaximum, KFold - 1);
+        for (ValidationListener listener : listeners) {
+            listener.rankingStarted(KFold, KNNMinimum, KNNMaximum);
+        }
+        ValidationEngine.Result result = engine.validateLeaveOneOut(trainingSet, KNNMinimum, KNNMaximum);    //2
+        return evaluate(result, KFold);
+    }
+
+    /**
+     * This method partitions (with random or stratified sampling) the training set in 'K-Fold' subsets, all of the
+     * same dimension.
+     *
+     * @param trainingSet       The training set, represented like a set of subsets of documents (one for each category).
+     * @param trainingSetSize   The number of different documents of the training set.
+     * @param KFold             The number of folds.
+     * @param isStratified      True if the folds must be created with stratified sampling, false for random sampling.
+     * @return                  The partitioned training set.
+     */
+    static Set<Set<Document>> partition(Set<Set<Document>> trainingSet, int trainingSetSize, int KFold, boolean isStratified) {
+        /**
+         * A copy of the training set is created. This is necessary, because if the sampling is stratified, each fold will be
+         * created iterating on each category of the training set, and removing from it documents added to the current partition/fold.
+         * Therefore, since the training set must not be modified, a new temporary copy of it is created, used in place of the original.
+         */
+        Set<Set<Document>> copyTrainingSet = new HashSet<Set<Document>>();
+        for (Set<Document> currentSubSet : trainingSet) {
+            Set<Document> copyCurrentSubSet = new HashSet<Document>();
+            copyCurrentSubSet.addAll(currentSubSet);
+            copyTrainingSet.add(copyCurrentSubSet);
+        }
+
+        Iterator<Document> randomIteratorTrainingSet = null;
+        int numberCategories = copyTrainingSet.size();
+        //Dimension of every fold
+        int foldDimension = trainingSetSize / KFold;
+        int numberDocumentsForCategory = 0;
+        if (isStratified) {
+            foldDimension = (foldDimension / numberCategories) * numberCategories;
+            numberDocumentsForCategory = foldDimension / numberCategories;
+        } else {
+            Set<Document> normalizedTrainingSet = new HashSet<Document>();
+            for (Set<Document> currentSubSet : copyTrainingSet) {
+                normalizedTrainingSet.addAll(currentSubSet);
+            }
+            randomIteratorTrainingSet = normalizedTrainingSet.iterator();
+        }
+
+        /**
+         * A partitioning of the training set's copy is prepared (with random or stratified sampling),
+         * in K-Fold subsets, all of the same dimension.
+         */
+        Set<Set<Document>> partitionedTrainingSet = new HashSet<Set<Document>>();
+        Set<Document> trainingSetSubSet;
+        Iterator<Document> iteratorTrainingSetCategory;                 //Iterator on the training set's categories
+        for (int j = 0; j < KFold; j++) {
+            trainingSetSubSet = new LinkedHashSet<Document>();
+            if (isStratified) {
+                for (Set<Document> currentCategory : copyTrainingSet) {
+                    iteratorTrainingSetCategory = currentCategory.iterator();
+                    for (int z = 0; z < numberDocumentsForCategory; z++) {
+                        trainingSetSubSet.add(iteratorTrainingSetCategory.next());
+                        iteratorTrainingSetCategory.remove();
+                    }
+                }
+            } else {
+                for (int z = 0; z < foldDimension; z++) {
+                    trainingSetSubSet.add(randomIteratorTrainingSet.next());
+                }
+            }
+            partitionedTrainingSet.add(trainingSetSubSet);
+        }
+        return partitionedTrainingSet;
+    }
+
+    /**
+     * This method reads, for each value of K, the category estimated for each document of the control sets, notifies it
+     * to the listeners, and chooses the value of K with the minimum classification error.
+     */
+    private Entry<Integer, Double> evaluate(ValidationEngine.Result result, int KFold) throws InterruptedException {
+        Entry<Integer, Double> minimumError = new AbstractMap.SimpleEntry<Integer, Double>(0, Double.MAX_VALUE);
+        int KNNMinimum = result.getKNNMinimum();
+        int KNNMaximum = result.getKNNMaximum();
+        final int totalNumberIterations = (KNNMaximum - KNNMinimum + 1) * result.getNumberDocuments();
+        int indexCurrentIteration = 0;
+        long lastProgress = System.currentTimeMillis();
+        List<Classification> batch = new ArrayList<Classification>(BATCHSIZE);
+        for (int K = KNNMinimum; K <= KNNMaximum; K++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            for (ValidationListener listener : listeners) {
+                listener.classificationStarted(K);
+            }
+            int errorCounter = 0;
+            for (int fold = 0; fold < result.getNumberFolds(); fold++) {
+                List<Document> currentControlSet = result.getControlSet(fold);
+                for (int query = 0; query < currentControlSet.size(); query++) {
+                    Document currentQuery = currentControlSet.get(query);
+                    String estimatedCategory = result.getEstimatedCategory(fold, query, K);
+                    if (!currentQuery.getCategories().contains(estimatedCategory)) {    //3
+                        errorCounter++;
+                    }
+                    indexCurrentIteration++;
+                    if (!listeners.isEmpty()) {
+                        batch.add(new Classification(currentQuery, fold, query, currentControlSet.size(), estimatedCategory, errorCounter));
+                        if (batch.size() == BATCHSIZE) {
+                            notifyClassifications(K, batch);
+                            batch = new ArrayList<Classification>(BATCHSIZE);
+                        }
+                        long now = System.currentTimeMillis();
+                        if (now - lastProgress >= PROGRESSINTERVAL) {
+                            lastProgress = now;
+                            notifyProgress(indexCurrentIteration, totalNumberIterations);
+                        }
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                notifyClassifications(K, batch);
+                batch = new ArrayList<Classification>(BATCHSIZE);
+            }
+            double classificationError = result.getClassificationError(K);
+            for (ValidationListener listener : listeners) {
+                listener.classificationErrorCalculated(K, KFold, classificationError);
+            }
+            if (classificationError < minimumError.getValue()) {    //4
+                minimumError = new AbstractMap.SimpleEntry<Integer, Double>(K, classificationError);
+            }
+        }
+        notifyProgress(indexCurrentIteration, totalNumberIterations);
+        return minimumError;
+    }
+
+    private void notifyClassifications(int K, List<Classification> classifications) {
+        for (ValidationListener listener : listeners) {
+            listener.documentsClassified(K, classifications);
+        }
+    }
+
+    private void notifyProgress(int completedIterations, int totalIterations) {
+        for (ValidationListener listener : listeners) {
+            listener.progress(completedIterations, totalIterations);
+        }
+    }
+
+    /**
+     * The outcome of the classification of a document of a control set, for a value of K.
+     */
+    static final class Classification {
+
+        private final Document document;
+        private final int fold, index, controlSetSize;
+        private final String estimatedCategory;
+        private final int numberErrors;
+
+        private Classification(Document document, int fold, int index, int controlSetSize, String estimatedCategory, int numberErrors) {
+            this.document = document;
+            this.fold = fold;
+            this.index = index;
+            this.controlSetSize = controlSetSize;
+            this.estimatedCategory = estimatedCategory;
+            this.numberErrors = numberErrors;
+        }
+
+        /**
+         * Accessor method to read the classified document.
+         *
+         * @return                  The document of the control set.
+         */
+        public Document getDocument() {
+            return document;
+        }
+
+        /**
+         * Accessor method to read the index of the fold of the document.
+         *
+         * @return                  The index of the fold, starting from 0.
+         */
+        public int getFold() {
+            return fold;
+        }
+
+        /**
+         * Accessor method to read the position of the document inside its control set.
+         *
+         * @return                  The position of the document, starting from 0.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Accessor method to read the number of documents of the control set of the document.
+         *
+         * @return                  The dimension of the control set.
+         */
+        public int getControlSetSize() {
+            return controlSetSize;
+        }
+
+        /**
+         * Accessor method to read the category estimated by the K-NN.
+         *
+         * @return                  The name of the estimated category.
+         */
+        public String getEstimatedCategory() {
+            return estimatedCategory;
+        }
+
+        /**
+         * This method returns if the estimated category is one of the effective categories of the document.
+         *
+         * @return                  True if the document has been classified correctly, false otherwise.
+         */
+        public boolean isCorrect() {
+            return document.getCategories().contains(estimatedCategory);
+        }
+
+        /**
+         * Accessor method to read the number of classification errors, for the current value of K, until this document
+         * (included).
+         *
+         * @return                  The current number of errors.
+         */
+        public int getNumberErrors() {
+            return numberErrors;
+        }
+    }
+}